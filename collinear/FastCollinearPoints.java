@@ -1,9 +1,11 @@
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.StdDraw;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * A faster, sorting-based solution. Remarkably, it is possible to solve the
@@ -15,23 +17,133 @@ public class FastCollinearPoints {
 
     private final LineSegment[] lineSegments;
 
+    /**
+     * How the points are grouped by slope around each origin.
+     */
+    public enum Grouping {
+
+        /**
+         * Sort the points by {@link Point#slopeTo} and compare the slopes as
+         * doubles, in O(n log n) per origin. Distinct slopes of points far
+         * apart may be equal as doubles.
+         */
+        SLOPE_SORT,
+
+        /**
+         * Count the points by exact direction, i.e. reduced (dx, dy), in a
+         * hash table, in expected O(n) per origin, for any int coordinates.
+         * The segments of an origin are ordered by their last point instead
+         * of their slope.
+         */
+        EXACT_HASH
+    }
+
     /**
      * Finds all line segments containing 4 points or more points.
      */
     public FastCollinearPoints(Point[] points) {
+        this(points, Grouping.SLOPE_SORT);
+    }
+
+    /**
+     * Finds all line segments containing 4 points or more points, grouping
+     * the points as specified.
+     */
+    public FastCollinearPoints(Point[] points, Grouping grouping) {
+
+        if (grouping == null) {
+            throw new NullPointerException("grouping is null.");
+        }
+        Point[] sortedPoints = sortedCopyOf(points);
+        final int N = points.length;
+        final List<LineSegment> maxLineSegments = new ArrayList<>();
+        SegmentFinder finder = new SegmentFinder(sortedPoints, grouping);
+        for (int i = 0; i < N; i++) {
+            finder.addSegmentsFrom(i, maxLineSegments);
+        }
+        lineSegments = maxLineSegments.toArray(new LineSegment[0]);
+    }
 
+    /**
+     * Finds all line segments containing 4 points or more points, processing
+     * the origins in parallel in the given pool. The segments are the same,
+     * in the same order, as the ones of the sequential constructor.
+     */
+    public FastCollinearPoints(Point[] points, ForkJoinPool pool) {
+        this(points, pool, Grouping.SLOPE_SORT);
+    }
+
+    /**
+     * Finds all line segments containing 4 points or more points, grouping
+     * the points as specified and processing the origins in parallel in the
+     * given pool. The segments are the same, in the same order, as the ones
+     * of the sequential constructor.
+     */
+    public FastCollinearPoints(Point[] points, ForkJoinPool pool,
+            Grouping grouping) {
+
+        if (pool == null || grouping == null) {
+            throw new NullPointerException("pool or grouping is null.");
+        }
+        Point[] sortedPoints = sortedCopyOf(points);
+        final int N = points.length;
+        // several leaves per thread, to balance the load
+        int originsPerTask = Math.max(1, N / (8 * pool.getParallelism()));
+        lineSegments = pool.invoke(new OriginTask(0, N, originsPerTask,
+                sortedPoints, grouping)).toArray(new LineSegment[0]);
+    }
+
+    private Point[] sortedCopyOf(Point[] points) {
         checkNull(points);
         Point[] sortedPoints = points.clone();
         Arrays.sort(sortedPoints);
         checkDuplicate(sortedPoints);
+        return sortedPoints;
+    }
 
-        final int N = points.length;
-        final List<LineSegment> maxLineSegments = new LinkedList<>();
+    /**
+     * Finds the max line segments of an origin, reusing its scratch arrays
+     * from one origin to the next.
+     */
+    private static class SegmentFinder {
 
-        for (int i = 0; i < N; i++) {
+        private final Point[] sortedPoints;
+        private final Grouping grouping;
+        private Point[] pointsBySlope;  // for SLOPE_SORT
+        private SlopeTable table;       // for EXACT_HASH
+        private int[] slotOf;           // slot of each point in the table
+        private final long[] direction = new long[2];
 
+        SegmentFinder(Point[] sortedPoints, Grouping grouping) {
+            this.sortedPoints = sortedPoints;
+            this.grouping = grouping;
+            final int N = sortedPoints.length;
+            if (grouping == Grouping.SLOPE_SORT) {
+                pointsBySlope = new Point[N];
+            } else {
+                table = new SlopeTable(N);
+                slotOf = new int[N];
+            }
+        }
+
+        /**
+         * Adds the max line segments whose smallest point is sortedPoints[i].
+         */
+        void addSegmentsFrom(int i, List<LineSegment> maxLineSegments) {
+            if (grouping == Grouping.SLOPE_SORT) {
+                addBySlopeSort(i, maxLineSegments);
+            } else {
+                addByExactHash(i, maxLineSegments);
+            }
+        }
+
+        private void addBySlopeSort(int i,
+                List<LineSegment> maxLineSegments) {
+
+            final int N = sortedPoints.length;
             Point p = sortedPoints[i];
-            Point[] pointsBySlope = sortedPoints.clone();
+            // The sort is stable: points of the same slope stay sorted.
+            System.arraycopy(sortedPoints, 0, pointsBySlope, 0, N);
             Arrays.sort(pointsBySlope, p.slopeOrder());
 
             // Notice the difference between "sortedPoints" & "pointsBySlope":
@@ -39,27 +151,172 @@ public class FastCollinearPoints {
             int x = 1;
             while (x < N) {
 
-                LinkedList<Point> candidates = new LinkedList<>();
+                final int first = x;
                 final double SLOPE_REF = p.slopeTo(pointsBySlope[x]);
                 do {
-                    candidates.add(pointsBySlope[x++]);
+                    x++;
                 } while (x < N && p.slopeTo(pointsBySlope[x]) == SLOPE_REF);
 
-                // Candidates have a max line segment if ...
+                // Candidates [first, x) have a max line segment if ...
                 // 1. Candidates are collinear: At least 4 points are located
                 //    at the same line, so at least 3 without "p".
-                // 2. The max line segment is created by the point "p" and the
-                //    last point in candidates: so "p" must be the smallest
-                //    point having this slope comparing to all candidates.
-                if (candidates.size() >= 3
-                        && p.compareTo(candidates.peek()) < 0) {
-                    Point min = p;
-                    Point max = candidates.removeLast();
-                    maxLineSegments.add(new LineSegment(min, max));
+                // 2. The max line segment is created by the point "p" and
+                //    the last point in candidates: so "p" must be the
+                //    smallest point having this slope comparing to all
+                //    candidates.
+                if (x - first >= 3 && p.compareTo(pointsBySlope[first]) < 0) {
+                    maxLineSegments.add(
+                            new LineSegment(p, pointsBySlope[x - 1]));
+                }
+            }
+        }
+
+        private void addByExactHash(int i,
+                List<LineSegment> maxLineSegments) {
+
+            final int N = sortedPoints.length;
+            Point p = sortedPoints[i];
+            table.clear();
+            // A line through a smaller point is found from that point.
+            for (int j = 0; j < i; j++) {
+                p.directionTo(sortedPoints[j], direction);
+                table.block(table.slotOf(direction[0], direction[1]));
+            }
+            for (int j = i + 1; j < N; j++) {
+                p.directionTo(sortedPoints[j], direction);
+                slotOf[j] = table.slotOf(direction[0], direction[1]);
+                table.add(slotOf[j], j);
+            }
+            // The points are visited in order: the segment of a line ends
+            // at its last point.
+            for (int j = i + 1; j < N; j++) {
+                if (table.count(slotOf[j]) >= 3
+                        && table.last(slotOf[j]) == j) {
+                    maxLineSegments.add(new LineSegment(p, sortedPoints[j]));
                 }
             }
         }
-        lineSegments = maxLineSegments.toArray(new LineSegment[0]);
+    }
+
+    /**
+     * Open-addressing hash table from directions (dx, dy), as computed by
+     * {@link Point#directionTo}, to the number of points and the index of
+     * the last point having that direction. Clearing it only increments a
+     * stamp, so it takes constant time.
+     */
+    private static class SlopeTable {
+
+        private static final int BLOCKED = -1;
+
+        private final long[] dxs;
+        private final long[] dys;
+        private final int[] counts;
+        private final int[] lasts;
+        private final int[] stamps;  // slot is used if its stamp is current
+        private final int mask;
+        private final int shift;
+        private int stamp = 1;
+
+        SlopeTable(int n) {
+            // load factor at most 1/2
+            int capacity = Integer.highestOneBit(Math.max(2 * n, 2) - 1) << 1;
+            dxs = new long[capacity];
+            dys = new long[capacity];
+            counts = new int[capacity];
+            lasts = new int[capacity];
+            stamps = new int[capacity];
+            mask = capacity - 1;
+            shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        void clear() {
+            stamp++;
+        }
+
+        /**
+         * Returns the slot of the direction, inserting it if it is missing.
+         */
+        int slotOf(long dx, long dy) {
+            long hash = (dy * 0x9E3779B97F4A7C15L ^ dx) * 0xC2B2AE3D27D4EB4FL;
+            int slot = (int) (hash >>> shift);
+            while (stamps[slot] == stamp) {
+                if (dxs[slot] == dx && dys[slot] == dy) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            stamps[slot] = stamp;
+            dxs[slot] = dx;
+            dys[slot] = dy;
+            counts[slot] = 0;
+            return slot;
+        }
+
+        void block(int slot) {
+            counts[slot] = BLOCKED;
+        }
+
+        void add(int slot, int index) {
+            if (counts[slot] != BLOCKED) {
+                counts[slot]++;
+                lasts[slot] = index;
+            }
+        }
+
+        int count(int slot) {
+            return counts[slot];
+        }
+
+        int last(int slot) {
+            return lasts[slot];
+        }
+    }
+
+    /**
+     * Finds the segments of the origins [lo, hi), by origin. Ranges of at
+     * most originsPerTask origins are not split, and each of them uses its
+     * own segment finder.
+     */
+    private static class OriginTask
+            extends RecursiveTask<List<LineSegment>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+        private final int originsPerTask;
+        private final Point[] sortedPoints;
+        private final Grouping grouping;
+
+        OriginTask(int lo, int hi, int originsPerTask, Point[] sortedPoints,
+                Grouping grouping) {
+            this.lo = lo;
+            this.hi = hi;
+            this.originsPerTask = originsPerTask;
+            this.sortedPoints = sortedPoints;
+            this.grouping = grouping;
+        }
+
+        @Override
+        protected List<LineSegment> compute() {
+            List<LineSegment> segments = new ArrayList<>();
+            if (hi - lo <= originsPerTask) {
+                SegmentFinder finder =
+                        new SegmentFinder(sortedPoints, grouping);
+                for (int i = lo; i < hi; i++) {
+                    finder.addSegmentsFrom(i, segments);
+                }
+                return segments;
+            }
+            int mid = (lo + hi) >>> 1;
+            OriginTask right = new OriginTask(mid, hi, originsPerTask,
+                    sortedPoints, grouping);
+            right.fork();
+            segments.addAll(new OriginTask(lo, mid, originsPerTask,
+                    sortedPoints, grouping).compute());
+            segments.addAll(right.join());
+            return segments;
+        }
     }
 
     private void checkNull(Point[] points) {
@@ -97,7 +354,9 @@ public class FastCollinearPoints {
     }
 
     /**
-     * Simple client provided by Princeton University.
+     * Simple client provided by Princeton University. An optional second
+     * argument gives a number of threads, to find the segments in parallel,
+     * and an optional third one the grouping, SLOPE_SORT or EXACT_HASH.
      */
     public static void main(String[] args) {
 
@@ -121,7 +380,19 @@ public class FastCollinearPoints {
         StdDraw.show();
 
         // print and draw the line segments
-        FastCollinearPoints collinear = new FastCollinearPoints(points);
+        Grouping grouping = args.length > 2
+                ? Grouping.valueOf(args[2]) : Grouping.SLOPE_SORT;
+        FastCollinearPoints collinear;
+        if (args.length > 1) {
+            ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(args[1]));
+            try {
+                collinear = new FastCollinearPoints(points, pool, grouping);
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            collinear = new FastCollinearPoints(points, grouping);
+        }
         for (LineSegment segment : collinear.segments()) {
             StdOut.println(segment);
             segment.draw();
@@ -1,4 +1,5 @@
 import edu.princeton.cs.algs4.StdDraw;
+import edu.princeton.cs.algs4.StdOut;
 import java.util.Comparator;
 
 /**
@@ -63,7 +64,44 @@ public class Point implements Comparable<Point> {
         if (this.y == that.y) {
             return 0.0;
         }
-        return (this.y - that.y) * 1.0 / (this.x - that.x);
+        // in long: the differences of int coordinates may overflow an int
+        return ((long) this.y - that.y) * 1.0 / ((long) this.x - that.x);
+    }
+
+    /**
+     * Stores the direction from this point to the specified point in
+     * {@code direction}: the difference (dx, dy) reduced by its gcd, with
+     * the sign chosen so that dx > 0, or dy > 0 for a vertical line. Two
+     * pairs of points have the same slope if and only if they have the same
+     * direction. The components may need 33 bits, so they do not fit
+     * together in a single {@code long}.
+     *
+     * @param  that the other point
+     * @param  direction array receiving dx at index 0 and dy at index 1
+     */
+    void directionTo(Point that, long[] direction) {
+        long dx = (long) that.x - x;
+        long dy = (long) that.y - y;
+        if (dx < 0 || (dx == 0 && dy < 0)) {
+            dx = -dx;
+            dy = -dy;
+        }
+        long gcd = gcd(dx, Math.abs(dy));
+        if (gcd > 1) {
+            dx /= gcd;
+            dy /= gcd;
+        }
+        direction[0] = dx;
+        direction[1] = dy;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
     }
 
     /**
@@ -80,7 +118,9 @@ public class Point implements Comparable<Point> {
      */
     public int compareTo(Point that) {
         /* YOUR CODE HERE */
-        return this.y == that.y ? this.x - that.x : this.y - that.y;
+        return this.y == that.y
+                ? Integer.compare(this.x, that.x)
+                : Integer.compare(this.y, that.y);
     }
 
     /**
@@ -128,5 +168,35 @@ public class Point implements Comparable<Point> {
      */
     public static void main(String[] args) {
         /* YOUR CODE HERE */
+        StdOut.println("Tests start.");
+
+        // Test 1: coordinates whose differences overflow an int
+        Point min = new Point(Integer.MIN_VALUE, Integer.MIN_VALUE);
+        Point max = new Point(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        Point origin = new Point(0, 0);
+        StdOut.println("Test 1A passed? " + (min.compareTo(max) < 0
+                && max.compareTo(min) > 0 && origin.compareTo(min) > 0));
+        StdOut.println("Test 1B passed? "
+                + (new Point(Integer.MIN_VALUE, 0).compareTo(
+                        new Point(Integer.MAX_VALUE, 0)) < 0));
+        StdOut.println("Test 1C passed? " + (min.slopeTo(max) == 1.0
+                && new Point(0, Integer.MIN_VALUE).slopeTo(
+                        new Point(1, Integer.MAX_VALUE)) == 4294967295.0));
+
+        // Test 2: the segment of a line through both extremes ends at them
+        Point[] points = {
+            origin, new Point(1, 1), new Point(2, 2), new Point(3, 3), min
+        };
+        for (FastCollinearPoints.Grouping grouping
+                : FastCollinearPoints.Grouping.values()) {
+            LineSegment[] segments =
+                    new FastCollinearPoints(points, grouping).segments();
+            StdOut.println("Test 2 " + grouping + " passed? "
+                    + (segments.length == 1 && segments[0].toString()
+                            .equals(new LineSegment(min,
+                                    new Point(3, 3)).toString())));
+        }
+
+        StdOut.println("Tests finished.");
     }
 }
@@ -0,0 +1,272 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Thread-safe percolation: any number of threads may open sites and query the
+ * grid at the same time. It relies on a lock-free union-find:
+ * <ul>
+ * <li>find uses path splitting with compare-and-set, and never blocks;
+ * <li>roots are linked by compare-and-set, the root of lower random priority
+ *     under the other one (randomized linking), retrying if either root
+ *     changed in the meantime.
+ * </ul>
+ * As in {@link Percolation}, roots carry two flags telling whether their
+ * cluster touches the top or the bottom row. A flag is set on the current
+ * root, then the setter checks that it is still a root and retries on the new
+ * root otherwise. A linker reads the flags of the old root after linking it,
+ * so no flag is lost. Once {@code open()} returns, its effects are visible to
+ * {@code isFull()} and {@code percolates()} of every thread.
+ *
+ * @author Mincong Huang
+ */
+public class ConcurrentPercolation {
+
+    private static final int OPEN = 1;
+    private static final int TOP = 2;
+    private static final int BOTTOM = 4;
+
+    private final AtomicIntegerArray parent;  // parent, itself for a root
+    private final AtomicIntegerArray state;   // OPEN, TOP / BOTTOM on roots
+    private final AtomicInteger openCount;
+    private final int n;
+    private volatile boolean percolates;
+
+    /**
+     * Create n-by-n grid, with all sites blocked
+     *
+     * @param n length and width of the grid
+     */
+    public ConcurrentPercolation(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be greater than 0.");
+        }
+        if (n > Percolation.MAX_N) {
+            throw new IllegalArgumentException(
+                    "n must not exceed " + Percolation.MAX_N + ".");
+        }
+        this.n = n;
+        parent = new AtomicIntegerArray(n * n);
+        state = new AtomicIntegerArray(n * n);
+        openCount = new AtomicInteger();
+        for (int i = 0; i < n * n; i++) {
+            parent.set(i, i);
+        }
+    }
+
+    /**
+     * Convert a 2D coordinate to 1D.
+     *
+     * @param row base-1 index of row
+     * @param col base-1 index of column
+     */
+    private int indexOf(int row, int col) {
+        // check bounds
+        if (row < 1 || row > n) {
+            throw new IndexOutOfBoundsException("Row is out of bounds.");
+        }
+        if (col < 1 || col > n) {
+            throw new IndexOutOfBoundsException("Column is out of bounds.");
+        }
+        return (row - 1) * n + (col - 1);
+    }
+
+    /**
+     * Open site (row, col) if it is not open already
+     *
+     * @param row base-1 index of row
+     * @param col base-1 index of column
+     */
+    public void open(int row, int col) {
+        int site = indexOf(row, col);
+        if ((state.getAndAccumulate(site, OPEN, ConcurrentPercolation::or)
+                & OPEN) != 0) {
+            return;  // opened by another thread
+        }
+        openCount.incrementAndGet();
+
+        int flags = 0;
+        if (row == 1) {
+            flags |= TOP;
+        }
+        if (row == n) {
+            flags |= BOTTOM;
+        }
+        if (flags != 0) {
+            setFlags(site, flags);
+        }
+        // A neighbor opened concurrently either sees this site open, or is
+        // seen open here: the site is marked open before checking neighbors.
+        if (row > 1) {
+            tryUnion(site, site - n);  // North
+        }
+        if (row < n) {
+            tryUnion(site, site + n);  // South
+        }
+        if (col > 1) {
+            tryUnion(site, site - 1);  // West
+        }
+        if (col < n) {
+            tryUnion(site, site + 1);  // East
+        }
+    }
+
+    private static int or(int a, int b) {
+        return a | b;
+    }
+
+    private void tryUnion(int siteA, int siteB) {
+        // I assume that siteA is open and both indices are correct.
+        if ((state.get(siteB) & OPEN) != 0) {
+            union(siteA, siteB);
+        }
+    }
+
+    /**
+     * Find the root of the site, splitting the path on the way with
+     * compare-and-set. A failed compare-and-set only means that another
+     * thread already changed the parent.
+     */
+    private int find(int site) {
+        while (true) {
+            int p = parent.get(site);
+            if (p == site) {
+                return site;
+            }
+            int grandParent = parent.get(p);
+            if (p != grandParent) {
+                parent.compareAndSet(site, p, grandParent);
+            }
+            site = p;
+        }
+    }
+
+    private void union(int siteA, int siteB) {
+        while (true) {
+            int rootA = find(siteA);
+            int rootB = find(siteB);
+            if (rootA == rootB) {
+                return;
+            }
+            // link the root of lower priority under the other one
+            if (priority(rootA) > priority(rootB)) {
+                int swap = rootA;
+                rootA = rootB;
+                rootB = swap;
+            }
+            if (parent.compareAndSet(rootA, rootA, rootB)) {
+                int flags = state.get(rootA) & (TOP | BOTTOM);
+                if (flags != 0) {
+                    setFlags(rootB, flags);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Random but fixed priority of a site: a bijective hash of its index, so
+     * two different sites never have the same priority.
+     */
+    private static int priority(int site) {
+        int h = site * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Add flags to the cluster containing the site.
+     */
+    private void setFlags(int site, int flags) {
+        while (true) {
+            int root = find(site);
+            int merged = or(state.getAndAccumulate(root, flags,
+                    ConcurrentPercolation::or), flags);
+            if ((merged & (TOP | BOTTOM)) == (TOP | BOTTOM)) {
+                percolates = true;
+            }
+            if (parent.get(root) == root) {
+                return;
+            }
+            // linked meanwhile: the linker may have missed these flags
+        }
+    }
+
+    /**
+     * Returns the number of open sites
+     */
+    public int numberOfOpenSites() {
+        return openCount.get();
+    }
+
+    /**
+     * Is site (row, col) open?
+     *
+     * @param row base-1 index of row
+     * @param col base-1 index of column
+     */
+    public boolean isOpen(int row, int col) {
+        return (state.get(indexOf(row, col)) & OPEN) != 0;
+    }
+
+    /**
+     * Is site (row, col) full?
+     *
+     * @param row base-1 index of row
+     * @param col base-1 index of column
+     */
+    public boolean isFull(int row, int col) {
+        int site = indexOf(row, col);
+        if ((state.get(site) & OPEN) == 0) {
+            return false;
+        }
+        while (true) {
+            int root = find(site);
+            if ((state.get(root) & TOP) != 0) {
+                return true;
+            }
+            if (parent.get(root) == root) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Does the system percolate?
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * Opens random sites from several threads until the system percolates,
+     * then prints the fraction of open sites.
+     * <p>
+     * Usage: {@code ConcurrentPercolation n threads seed}
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int n = Integer.parseInt(args[0]);
+        int threadCount = Integer.parseInt(args[1]);
+        SplittableRandom random = new SplittableRandom(Long.parseLong(args[2]));
+        ConcurrentPercolation percolation = new ConcurrentPercolation(n);
+
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            SplittableRandom threadRandom = random.split();
+            threads[i] = new Thread(() -> {
+                while (!percolation.percolates()) {
+                    int row = threadRandom.nextInt(n) + 1;  // base-1
+                    int col = threadRandom.nextInt(n) + 1;  // base-1
+                    percolation.open(row, col);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        StdOut.println("threshold = "
+                + percolation.numberOfOpenSites() * 1.0 / (n * n));
+    }
+}
@@ -0,0 +1,269 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Percolation on grids too large for {@link Percolation}: sites are indexed by
+ * {@code long} and the union-find lives off-heap, either in direct buffers or
+ * in a memory-mapped file, so that the garbage collector never scans it.
+ * <p>
+ * Each site takes a single {@code long}:
+ * <ul>
+ * <li>{@code 0} if the site is blocked, so that fresh (zero-filled) memory is a
+ *     fully blocked grid;
+ * <li>{@code parent + 1} if the site is open and not a root;
+ * <li>{@code -(size << 2 | flags)} if the site is the root of a cluster, where
+ *     the flags tell whether the cluster touches the top or the bottom row.
+ * </ul>
+ *
+ * @author Mincong Huang
+ */
+public class LargePercolation {
+
+    private static final long TOP = 1;
+    private static final long BOTTOM = 2;
+    private static final long FLAGS = TOP | BOTTOM;
+
+    private static final int CHUNK_SHIFT = 27;  // 2^27 longs = 1 GiB per chunk
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private final LongBuffer[] chunks;
+    private final int n;
+    private long openCount;
+    private boolean percolates;
+
+    /**
+     * Create n-by-n grid, with all sites blocked, stored in direct buffers.
+     *
+     * @param n length and width of the grid
+     */
+    public LargePercolation(int n) {
+        this.n = checkSize(n);
+        long sites = (long) n * n;
+        chunks = new LongBuffer[chunkCount(sites)];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(chunkBytes(sites, i))
+                    .order(ByteOrder.nativeOrder())
+                    .asLongBuffer();
+        }
+    }
+
+    /**
+     * Create n-by-n grid, with all sites blocked, stored in a memory-mapped
+     * file. The file is created or truncated, so the grid can be larger than
+     * the physical memory.
+     *
+     * @param n length and width of the grid
+     * @param file file backing the grid
+     * @throws IOException if the file cannot be mapped
+     */
+    public LargePercolation(int n, Path file) throws IOException {
+        this.n = checkSize(n);
+        if (file == null) {
+            throw new NullPointerException("file is null.");
+        }
+        long sites = (long) n * n;
+        chunks = new LongBuffer[chunkCount(sites)];
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = ((long) i << CHUNK_SHIFT) * Long.BYTES;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        offset, chunkBytes(sites, i))
+                        .order(ByteOrder.nativeOrder())
+                        .asLongBuffer();
+            }
+        }
+    }
+
+    private static int checkSize(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be greater than 0.");
+        }
+        return n;
+    }
+
+    private static int chunkCount(long sites) {
+        return (int) ((sites + CHUNK_MASK) >>> CHUNK_SHIFT);
+    }
+
+    private static int chunkBytes(long sites, int chunk) {
+        long first = (long) chunk << CHUNK_SHIFT;
+        return (int) (Math.min(sites - first, CHUNK_MASK + 1) * Long.BYTES);
+    }
+
+    private long get(long site) {
+        return chunks[(int) (site >>> CHUNK_SHIFT)].get((int) (site & CHUNK_MASK));
+    }
+
+    private void set(long site, long value) {
+        chunks[(int) (site >>> CHUNK_SHIFT)].put((int) (site & CHUNK_MASK), value);
+    }
+
+    /**
+     * Convert a 2D coordinate to 1D.
+     *
+     * @param row base-1 index of row
+     * @param col base-1 index of column
+     */
+    private long indexOf(int row, int col) {
+        // check bounds
+        if (row < 1 || row > n) {
+            throw new IndexOutOfBoundsException("Row is out of bounds.");
+        }
+        if (col < 1 || col > n) {
+            throw new IndexOutOfBoundsException("Column is out of bounds.");
+        }
+        return (long) (row - 1) * n + (col - 1);
+    }
+
+    /**
+     * Open site (row, col) if it is not open already
+     *
+     * @param row base-1 index of row
+     * @param col base-1 index of column
+     */
+    public void open(int row, int col) {
+        long site = indexOf(row, col);
+        if (get(site) != 0) {
+            return;
+        }
+        long flags = 0;
+        if (row == 1) {
+            flags |= TOP;
+        }
+        if (row == n) {
+            flags |= BOTTOM;
+        }
+        set(site, -(1L << 2 | flags));
+        openCount++;
+        if (flags == FLAGS) {
+            percolates = true;  // 1-by-1 grid
+        }
+        if (row > 1) {
+            tryUnion(site, site - n);  // North
+        }
+        if (row < n) {
+            tryUnion(site, site + n);  // South
+        }
+        if (col > 1) {
+            tryUnion(site, site - 1);  // West
+        }
+        if (col < n) {
+            tryUnion(site, site + 1);  // East
+        }
+    }
+
+    private void tryUnion(long siteA, long siteB) {
+        // I assume that siteA is open and both indices are correct.
+        if (get(siteB) != 0) {
+            union(siteA, siteB);
+        }
+    }
+
+    private long find(long site) {
+        long root = site;
+        long value;
+        while ((value = get(root)) > 0) {
+            root = value - 1;
+        }
+        // path compression
+        while (site != root) {
+            long next = get(site) - 1;
+            set(site, root + 1);
+            site = next;
+        }
+        return root;
+    }
+
+    private void union(long siteA, long siteB) {
+        long rootA = find(siteA);
+        long rootB = find(siteB);
+        if (rootA == rootB) {
+            return;
+        }
+        long valueA = -get(rootA);
+        long valueB = -get(rootB);
+        // attach the smaller tree
+        if ((valueA >>> 2) < (valueB >>> 2)) {
+            long swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+            swap = valueA;
+            valueA = valueB;
+            valueB = swap;
+        }
+        long size = (valueA >>> 2) + (valueB >>> 2);
+        long flags = (valueA | valueB) & FLAGS;
+        set(rootA, -(size << 2 | flags));
+        set(rootB, rootA + 1);
+        if (flags == FLAGS) {
+            percolates = true;
+        }
+    }
+
+    /**
+     * Returns the number of open sites
+     */
+    public long numberOfOpenSites() {
+        return openCount;
+    }
+
+    /**
+     * Is site (row, col) open?
+     *
+     * @param row base-1 index of row
+     * @param col base-1 index of column
+     */
+    public boolean isOpen(int row, int col) {
+        return get(indexOf(row, col)) != 0;
+    }
+
+    /**
+     * Is site (row, col) full?
+     *
+     * @param row base-1 index of row
+     * @param col base-1 index of column
+     */
+    public boolean isFull(int row, int col) {
+        long site = indexOf(row, col);
+        return get(site) != 0 && (-get(find(site)) & TOP) != 0;
+    }
+
+    /**
+     * Does the system percolate?
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * Runs a single experiment and prints the percolation threshold.
+     * <p>
+     * Usage: {@code LargePercolation n seed [file]}
+     */
+    public static void main(String[] args) throws IOException {
+
+        int n = Integer.parseInt(args[0]);
+        SplittableRandom random = new SplittableRandom(Long.parseLong(args[1]));
+        LargePercolation percolation = args.length > 2
+                ? new LargePercolation(n, Paths.get(args[2]))
+                : new LargePercolation(n);
+        while (!percolation.percolates()) {
+            int row = random.nextInt(n) + 1;  // base-1
+            int col = random.nextInt(n) + 1;  // base-1
+            percolation.open(row, col);
+        }
+        StdOut.println("threshold = "
+                + percolation.numberOfOpenSites() * 1.0 / ((double) n * n));
+    }
+}
@@ -1,5 +1,6 @@
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Percolation. Given a composite systems comprised of randomly distributed
@@ -9,19 +10,32 @@ import edu.princeton.cs.algs4.WeightedQuickUnionUF;
  * conditions will the water be able to drain through to the bottom (or the oil
  * to gush through to the surface)? Scientists have defined an abstract process
  * known as percolation to model such situations.
+ * <p>
+ * Sites are stored in a single union-find structure backed by one int array:
+ * a non-negative entry is the parent of the site, a negative entry marks a
+ * root and stores the size of its tree (weighted union with full path
+ * compression). Instead of virtual top and bottom sites, every root carries
+ * two flags telling whether its cluster touches the top row or the bottom row,
+ * so there is no backwash and no need for a second union-find.
  *
  * @author Mincong Huang
  * @author Nilesh Deokar (nieldeokar)
  */
 public class Percolation {
 
-    private final WeightedQuickUnionUF normalQU;
-    private final WeightedQuickUnionUF backwashQU;
-    private final boolean[] isOpen;
-    private final int topIndex;
-    private final int btmIndex;
+    private static final byte OPEN = 1;
+    private static final byte TOP = 2;
+    private static final byte BOTTOM = 4;
+    private static final byte NEW = 8;  // opened by the current batch
+
+    static final int MAX_N = 46340;  // n * n must fit in an int
+
+    private final int[] parent;  // parent, or -size if the site is a root
+    private final byte[] state;  // OPEN per site, TOP / BOTTOM per root
     private final int n;
+    private final PercolationMetrics metrics;  // null if not instrumented
     private int openCount;
+    private boolean percolates;
 
     /**
      * Create n-by-n grid, with all sites blocked
@@ -29,17 +43,44 @@ public class Percolation {
      * @param n length and width of the grid
      */
     public Percolation(int n) {
+        this(n, false);
+    }
+
+    /**
+     * Create n-by-n grid, with all sites blocked, optionally counting the
+     * union-find operations.
+     *
+     * @param n length and width of the grid
+     * @param instrumented whether to collect metrics
+     * @see #metrics()
+     */
+    public Percolation(int n, boolean instrumented) {
         if (n <= 0) {
             throw new IllegalArgumentException("n must be greater than 0.");
         }
+        if (n > MAX_N) {
+            throw new IllegalArgumentException(
+                    "n must not exceed " + MAX_N + ", use LargePercolation.");
+        }
         this.n = n;
-        topIndex = 0;
-        btmIndex = n * n + 1;
-        backwashQU = new WeightedQuickUnionUF(n * n + 2);
-        normalQU = new WeightedQuickUnionUF(n * n + 1);  // wihout bottom index
-        isOpen = new boolean[n * n + 2];
-        isOpen[topIndex] = true;
-        isOpen[btmIndex] = true;
+        parent = new int[n * n];
+        state = new byte[n * n];
+        metrics = instrumented ? new PercolationMetrics() : null;
+        Arrays.fill(parent, -1);
+    }
+
+    /**
+     * Block every site again, so that the same buffers can be reused by the
+     * next experiment.
+     */
+    void reset() {
+        Arrays.fill(parent, -1);
+        Arrays.fill(state, (byte) 0);
+        openCount = 0;
+        percolates = false;
+        if (metrics != null) {
+            metrics.clear();
+        }
     }
 
     /**
@@ -56,7 +97,7 @@ public class Percolation {
         if (col < 1 || col > n) {
             throw new IndexOutOfBoundsException("Column is out of bounds.");
         }
-        return (row - 1) * n + col;
+        return (row - 1) * n + (col - 1);
     }
 
     /**
@@ -66,36 +107,217 @@ public class Percolation {
      * @param col base-1 index of column
      */
     public void open(int row, int col) {
-        int currIndex = indexOf(row, col);
-        isOpen[currIndex] = true;
+        openSite(indexOf(row, col));
+    }
+
+    /**
+     * Open the site at the given base-0, row-major index. The index is assumed
+     * to be valid.
+     */
+    void openSite(int site) {
+        if (!markOpen(site)) {
+            return;
+        }
+        int row = site / n;
+        int col = site - row * n;
+        if (row > 0) {
+            tryUnion(site, site - n);  // North
+        }
+        if (row < n - 1) {
+            tryUnion(site, site + n);  // South
+        }
+        if (col > 0) {
+            tryUnion(site, site - 1);  // West
+        }
+        if (col < n - 1) {
+            tryUnion(site, site + 1);  // East
+        }
+    }
+
+    /**
+     * Mark the site as open, as its own cluster.
+     *
+     * @return false if the site was already open
+     */
+    private boolean markOpen(int site) {
+        if ((state[site] & OPEN) != 0) {
+            return false;
+        }
+        state[site] |= OPEN;
         openCount++;
+        if (metrics != null) {
+            metrics.recordOpen();
+        }
+        if (site < n) {
+            state[site] |= TOP;
+        }
+        if (site >= n * (n - 1)) {
+            state[site] |= BOTTOM;
+        }
+        if ((state[site] & (TOP | BOTTOM)) == (TOP | BOTTOM)) {
+            percolates = true;  // 1-by-1 grid
+        }
+        return true;
+    }
 
-        if (row == 1) {
-            backwashQU.union(currIndex, topIndex);  // Top
-            normalQU.union(currIndex, topIndex);
+    /**
+     * Open all the sites (rows[i], cols[i]) which are not open already.
+     *
+     * @param rows base-1 indices of rows
+     * @param cols base-1 indices of columns
+     */
+    public void openAll(int[] rows, int[] cols) {
+        if (rows == null || cols == null) {
+            throw new NullPointerException("rows or cols is null.");
         }
-        if (row == n) {
-            backwashQU.union(currIndex, btmIndex);  // Bottom
+        if (rows.length != cols.length) {
+            throw new IllegalArgumentException(
+                    "rows and cols must have the same length.");
         }
-        tryUnion(row, col, row - 1, col);  // North 
-        tryUnion(row, col, row + 1, col);  // South        
-        tryUnion(row, col, row, col - 1);  // West
-        tryUnion(row, col, row, col + 1);  // East
+        int[] sites = new int[rows.length];
+        for (int i = 0; i < sites.length; i++) {
+            sites[i] = indexOf(rows[i], cols[i]);
+        }
+        openBatch(sites);
     }
 
-    private void tryUnion(int rowA, int colA, int rowB, int colB) {
-        // I assume that (rowA, colA) is correct.
-        if (0 < rowB && rowB <= n && 0 < colB && colB <= n
-                && isOpen(rowB, colB)) {
-            backwashQU.union(indexOf(rowA, colA), indexOf(rowB, colB));
-            normalQU.union(indexOf(rowA, colA), indexOf(rowB, colB));
+    /**
+     * Open all the sites whose base-0, row-major index is set in the given
+     * bit set, i.e. the site (row, col) is bit (row - 1) * n + (col - 1).
+     */
+    public void openAll(BitSet sites) {
+        if (sites == null) {
+            throw new NullPointerException("sites is null.");
+        }
+        if (sites.length() > parent.length) {
+            throw new IndexOutOfBoundsException("Site is out of bounds.");
+        }
+        openBatch(sites.stream().toArray());
+    }
+
+    /**
+     * Open all the sites of the given base-0, row-major indices, i.e. the
+     * site (row, col) has index (row - 1) * n + (col - 1).
+     */
+    public void openIndices(int[] sites) {
+        if (sites == null) {
+            throw new NullPointerException("sites is null.");
+        }
+        for (int site : sites) {
+            if (site < 0 || site >= parent.length) {
+                throw new IndexOutOfBoundsException("Site is out of bounds.");
+            }
+        }
+        openBatch(sites.clone());
+    }
+
+    /**
+     * Open a batch of valid sites: mark them all as open first, then union
+     * them with their neighbors in a single pass in row-major order. A new
+     * site is only united with its north and west neighbors, and with its
+     * south and east neighbors when they were open before the batch, so
+     * every pair of open neighbors is united once.
+     *
+     * @param sites base-0, row-major indices, sorted in place
+     */
+    private void openBatch(int[] sites) {
+        Arrays.sort(sites);
+        int count = 0;
+        for (int site : sites) {
+            if (markOpen(site)) {
+                state[site] |= NEW;
+                sites[count++] = site;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int site = sites[i];
+            int row = site / n;
+            int col = site - row * n;
+            if (row > 0) {
+                tryUnion(site, site - n);  // North
+            }
+            if (col > 0) {
+                tryUnion(site, site - 1);  // West
+            }
+            if (col < n - 1 && (state[site + 1] & NEW) == 0) {
+                tryUnion(site, site + 1);  // East
+            }
+            if (row < n - 1 && (state[site + n] & NEW) == 0) {
+                tryUnion(site, site + n);  // South
+            }
+            state[site] &= ~NEW;
+        }
+    }
+
+    private void tryUnion(int siteA, int siteB) {
+        // I assume that siteA is open and both indices are correct.
+        if ((state[siteB] & OPEN) != 0) {
+            union(siteA, siteB);
+        }
+    }
+
+    private int find(int site) {
+        int root = site;
+        int pathLength = 0;
+        while (parent[root] >= 0) {
+            root = parent[root];
+            pathLength++;
+        }
+        if (metrics != null) {
+            metrics.recordFind(pathLength);
+        }
+        // path compression
+        while (site != root) {
+            int next = parent[site];
+            parent[site] = root;
+            site = next;
+        }
+        return root;
+    }
+
+    private void union(int siteA, int siteB) {
+        int rootA = find(siteA);
+        int rootB = find(siteB);
+        if (metrics != null) {
+            metrics.recordUnion(rootA != rootB);
+        }
+        if (rootA == rootB) {
+            return;
+        }
+        // attach the smaller tree (sizes are stored as negative numbers)
+        if (parent[rootA] > parent[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootA] += parent[rootB];
+        parent[rootB] = rootA;
+        state[rootA] |= state[rootB] & (TOP | BOTTOM);
+        if ((state[rootA] & (TOP | BOTTOM)) == (TOP | BOTTOM)) {
+            percolates = true;
         }
     }
-    
+
+    /**
+     * Number of sites in the cluster containing the given base-0, row-major
+     * site index.
+     */
+    int clusterSize(int site) {
+        return -parent[find(site)];
+    }
+
+    /**
+     * Metrics of the union-find operations since the creation or the last
+     * reset of the grid, or null if the grid is not instrumented.
+     */
+    public PercolationMetrics metrics() {
+        return metrics;
+    }
+
     /**
      * Returns the number of open sites
      */
-    public int numberOfOpenSites(){
+    public int numberOfOpenSites() {
         return openCount;
     }
 
@@ -106,7 +328,7 @@ public class Percolation {
      * @param col base-1 index of column
      */
     public boolean isOpen(int row, int col) {
-        return isOpen[indexOf(row, col)];
+        return (state[indexOf(row, col)] & OPEN) != 0;
     }
 
     /**
@@ -116,14 +338,15 @@ public class Percolation {
      * @param col base-1 index of column
      */
     public boolean isFull(int row, int col) {
-        return normalQU.connected(topIndex, indexOf(row, col));
+        int site = indexOf(row, col);
+        return (state[site] & OPEN) != 0 && (state[find(site)] & TOP) != 0;
     }
 
     /**
      * Does the system percolate?
      */
     public boolean percolates() {
-        return backwashQU.connected(topIndex, btmIndex);
+        return percolates;
     }
 
     public static void main(String[] args) {
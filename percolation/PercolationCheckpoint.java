@@ -0,0 +1,168 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only checkpoint file of a {@link PercolationStats} run. The file
+ * starts with a fixed-size header holding the configuration of the run, then
+ * the fractions of the completed trials are appended batch by batch.
+ * <p>
+ * The random generator of each batch is split from the master one, so the
+ * state of the generators is fully described by the seed and the number of
+ * completed batches. A batch only partially written when the process died is
+ * dropped on resume.
+ *
+ * @author Mincong Huang
+ */
+final class PercolationCheckpoint implements Closeable {
+
+    private static final int MAGIC = 0x50435331;  // "PCS1"
+    private static final int HEADER_BYTES = 32;
+
+    final int n;
+    final int maxTrials;
+    final double width;  // 0 if there is no target width
+    final long seed;
+    final PercolationStats.Sampling sampling;
+
+    private final FileChannel channel;
+    private final double[] completed;
+
+    private PercolationCheckpoint(FileChannel channel, int n, int maxTrials,
+            double width, long seed, PercolationStats.Sampling sampling,
+            double[] completed) {
+        this.channel = channel;
+        this.n = n;
+        this.maxTrials = maxTrials;
+        this.width = width;
+        this.seed = seed;
+        this.sampling = sampling;
+        this.completed = completed;
+    }
+
+    /**
+     * Create a new checkpoint file, failing if it already exists.
+     */
+    static PercolationCheckpoint create(Path file, int n, int maxTrials,
+            double width, long seed, PercolationStats.Sampling sampling)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC)
+                    .putInt(n)
+                    .putInt(maxTrials)
+                    .putDouble(width)
+                    .putLong(seed)
+                    .putInt(sampling.ordinal())
+                    .flip();
+            writeFully(channel, header);
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new PercolationCheckpoint(channel, n, maxTrials, width, seed,
+                sampling, new double[0]);
+    }
+
+    /**
+     * Open an existing checkpoint file, keeping only the completed batches.
+     *
+     * @param batchTrials number of trials per batch
+     */
+    static PercolationCheckpoint open(Path file, int batchTrials)
+            throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file: " + file);
+            }
+            int n = header.getInt();
+            int maxTrials = header.getInt();
+            double width = header.getDouble();
+            long seed = header.getLong();
+            int ordinal = header.getInt();
+            PercolationStats.Sampling[] samplings =
+                    PercolationStats.Sampling.values();
+            if (n <= 0 || maxTrials <= 0 || !(width >= 0)
+                    || ordinal < 0 || ordinal >= samplings.length) {
+                throw new IOException("Corrupt checkpoint header: " + file);
+            }
+            PercolationStats.Sampling sampling = samplings[ordinal];
+
+            long count = (channel.size() - HEADER_BYTES) / Double.BYTES;
+            int kept = (int) Math.min(count, maxTrials);
+            if (kept < maxTrials) {
+                kept = kept / batchTrials * batchTrials;
+            }
+            channel.truncate(HEADER_BYTES + (long) kept * Double.BYTES);
+
+            ByteBuffer body = ByteBuffer.allocate(kept * Double.BYTES);
+            readFully(channel, body, HEADER_BYTES);
+            body.flip();
+            double[] completed = new double[kept];
+            body.asDoubleBuffer().get(completed);
+            channel.position(channel.size());
+            return new PercolationCheckpoint(channel, n, maxTrials, width,
+                    seed, sampling, completed);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Fractions of the trials completed before this checkpoint was opened.
+     */
+    double[] completedTrials() {
+        return completed.clone();
+    }
+
+    /**
+     * Append the fractions of trials [from, to) and force them to the disk.
+     *
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    void append(double[] fractions, int from, int to) {
+        ByteBuffer buffer = ByteBuffer.allocate((to - from) * Double.BYTES);
+        buffer.asDoubleBuffer().put(fractions, from, to - from);
+        try {
+            writeFully(channel, buffer);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Checkpoint file is truncated.");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,184 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.SplittableRandom;
+
+/**
+ * Percolation probability and largest cluster size as functions of the site
+ * vacancy probability {@code p}, computed with the Newman-Ziff algorithm.
+ * <p>
+ * Each trial opens all the n-by-n sites once, in the order of a random
+ * permutation, and records after how many open sites the system percolates
+ * and the size of the largest cluster after each step. These observables only
+ * depend on the number {@code k} of open sites. The value for a probability
+ * {@code p} is then the average over {@code k} weighted by the binomial
+ * distribution B(n * n, p), so any number of points of the curve can be
+ * computed from the same sweeps.
+ *
+ * @author Mincong Huang
+ */
+public class PercolationCurve {
+
+    private static final double EPSILON = 1e-17;  // negligible binomial weight
+
+    private final int sites;
+    private final double[] percolating;  // P(percolates | k open sites)
+    private final double[] largest;      // E(largest cluster | k open sites)
+    private final double threshold;
+
+    /**
+     * Sweep trials independent n-by-n grids.
+     *
+     * @param seed seed of the random permutations
+     */
+    public PercolationCurve(int n, int trials, long seed) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n <= 0.");
+        }
+        if (trials <= 0) {
+            throw new IllegalArgumentException("trials <= 0.");
+        }
+        sites = n * n;
+        percolating = new double[sites + 1];
+        largest = new double[sites + 1];
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Percolation percolation = new Percolation(n);
+        int[] order = new int[sites];
+        long percolationSteps = 0;
+        for (int t = 0; t < trials; t++) {
+            if (t > 0) {
+                percolation.reset();
+            }
+            for (int i = 0; i < sites; i++) {
+                order[i] = i;
+            }
+            int maxCluster = 0;
+            int percolationStep = 0;
+            for (int i = 0; i < sites; i++) {
+                int j = i + random.nextInt(sites - i);
+                int site = order[j];
+                order[j] = order[i];
+                order[i] = site;
+                percolation.openSite(site);
+                maxCluster = Math.max(maxCluster, percolation.clusterSize(site));
+                largest[i + 1] += maxCluster;
+                if (percolationStep == 0 && percolation.percolates()) {
+                    percolationStep = i + 1;
+                }
+            }
+            percolating[percolationStep]++;
+            percolationSteps += percolationStep;
+        }
+
+        // cumulative histogram of the percolation steps, then averages
+        for (int k = 1; k <= sites; k++) {
+            percolating[k] += percolating[k - 1];
+        }
+        for (int k = 0; k <= sites; k++) {
+            percolating[k] /= trials;
+            largest[k] /= trials;
+        }
+        threshold = percolationSteps * 1.0 / trials / sites;
+    }
+
+    /**
+     * Probability that the system percolates when each site is open with
+     * probability p.
+     */
+    public double percolationProbability(double p) {
+        return convolve(percolating, p);
+    }
+
+    /**
+     * Percolation probabilities of each given p.
+     */
+    public double[] percolationProbabilities(double[] ps) {
+        if (ps == null) {
+            throw new NullPointerException("ps is null.");
+        }
+        double[] results = new double[ps.length];
+        for (int i = 0; i < ps.length; i++) {
+            results[i] = percolationProbability(ps[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Expected fraction of the sites belonging to the largest cluster when
+     * each site is open with probability p.
+     */
+    public double largestClusterFraction(double p) {
+        return convolve(largest, p) / sites;
+    }
+
+    /**
+     * Sample mean of percolation threshold, i.e. the mean fraction of open
+     * sites at the step where the system starts to percolate.
+     */
+    public double threshold() {
+        return threshold;
+    }
+
+    /**
+     * Average of values[k] weighted by the binomial distribution B(N, p),
+     * where N is the number of sites. The weights are computed relatively to
+     * the mode of the distribution and the summation stops when they become
+     * negligible, so it never underflows.
+     */
+    private double convolve(double[] values, double p) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("p must be in [0, 1].");
+        }
+        if (p == 0) {
+            return values[0];
+        }
+        if (p == 1) {
+            return values[sites];
+        }
+        int mode = (int) (sites * p);
+        double sum = values[mode];
+        double norm = 1;
+        double ratio = p / (1 - p);
+
+        double weight = 1;
+        for (int k = mode + 1; k <= sites; k++) {
+            weight *= (double) (sites - k + 1) / k * ratio;
+            if (weight < EPSILON * norm) {
+                break;
+            }
+            sum += weight * values[k];
+            norm += weight;
+        }
+        weight = 1;
+        for (int k = mode - 1; k >= 0; k--) {
+            weight *= (double) (k + 1) / (sites - k) / ratio;
+            if (weight < EPSILON * norm) {
+                break;
+            }
+            sum += weight * values[k];
+            norm += weight;
+        }
+        return sum / norm;
+    }
+
+    /**
+     * Prints the curve for points values of p evenly spaced in [0, 1].
+     * <p>
+     * Usage: {@code PercolationCurve n trials seed points}
+     */
+    public static void main(String[] args) {
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+        long seed = Long.parseLong(args[2]);
+        int points = Integer.parseInt(args[3]);
+        PercolationCurve curve = new PercolationCurve(n, trials, seed);
+
+        StdOut.println("threshold = " + curve.threshold());
+        for (int i = 0; i < points; i++) {
+            double p = points == 1 ? 0.5 : i * 1.0 / (points - 1);
+            StdOut.printf("%.4f %.6f %.6f%n", p,
+                    curve.percolationProbability(p),
+                    curve.largestClusterFraction(p));
+        }
+    }
+}
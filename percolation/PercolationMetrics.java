@@ -0,0 +1,186 @@
+/**
+ * Operation counters of the union-find of {@link Percolation}, and timing
+ * histogram of the trials of {@link PercolationStats}. Instrumentation is
+ * optional: an uninstrumented percolation has no metrics and only pays for a
+ * null check per operation.
+ * <p>
+ * The metrics of several instances can be aggregated with {@link #add}, in
+ * which case the counters are summed over all the instances.
+ *
+ * @author Mincong Huang
+ */
+public class PercolationMetrics {
+
+    private static final int BUCKETS = 64;
+
+    private long openedSites;
+    private long draws;
+    private long unionCalls;
+    private long unions;
+    private long finds;
+    private long findPathLength;
+    private int maxFindPathLength;
+    private long trials;
+    private final long[] trialTimes = new long[BUCKETS];
+
+    void recordOpen() {
+        openedSites++;
+    }
+
+    void recordDraws(long count) {
+        draws += count;
+    }
+
+    void recordUnion(boolean merged) {
+        unionCalls++;
+        if (merged) {
+            unions++;
+        }
+    }
+
+    void recordFind(int pathLength) {
+        finds++;
+        findPathLength += pathLength;
+        if (pathLength > maxFindPathLength) {
+            maxFindPathLength = pathLength;
+        }
+    }
+
+    void recordTrial(long nanos) {
+        trials++;
+        trialTimes[63 - Long.numberOfLeadingZeros(Math.max(nanos, 1))]++;
+    }
+
+    /**
+     * Add the metrics of another instance to these ones.
+     */
+    public synchronized void add(PercolationMetrics that) {
+        if (that == null) {
+            throw new NullPointerException("that is null.");
+        }
+        openedSites += that.openedSites;
+        draws += that.draws;
+        unionCalls += that.unionCalls;
+        unions += that.unions;
+        finds += that.finds;
+        findPathLength += that.findPathLength;
+        maxFindPathLength = Math.max(maxFindPathLength, that.maxFindPathLength);
+        trials += that.trials;
+        for (int i = 0; i < BUCKETS; i++) {
+            trialTimes[i] += that.trialTimes[i];
+        }
+    }
+
+    /**
+     * Reset every counter to zero.
+     */
+    synchronized void clear() {
+        openedSites = 0;
+        draws = 0;
+        unionCalls = 0;
+        unions = 0;
+        finds = 0;
+        findPathLength = 0;
+        maxFindPathLength = 0;
+        trials = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            trialTimes[i] = 0;
+        }
+    }
+
+    /**
+     * Number of sites opened.
+     */
+    public synchronized long openedSites() {
+        return openedSites;
+    }
+
+    /**
+     * Number of random sites drawn by the trials, including the ones which
+     * were already open.
+     */
+    public synchronized long draws() {
+        return draws;
+    }
+
+    /**
+     * Number of unions between open neighbors, including the ones of sites
+     * already connected.
+     */
+    public synchronized long unionCalls() {
+        return unionCalls;
+    }
+
+    /**
+     * Number of unions which merged two clusters.
+     */
+    public synchronized long unions() {
+        return unions;
+    }
+
+    /**
+     * Number of clusters of open sites: each opened site creates one and
+     * each merging union removes one.
+     */
+    public synchronized long clusters() {
+        return openedSites - unions;
+    }
+
+    /**
+     * Number of find operations.
+     */
+    public synchronized long finds() {
+        return finds;
+    }
+
+    /**
+     * Average number of links followed by a find operation.
+     */
+    public synchronized double averageFindPathLength() {
+        return finds == 0 ? 0 : findPathLength * 1.0 / finds;
+    }
+
+    /**
+     * Longest path followed by a find operation, i.e. the height of the
+     * highest tree seen before path compression.
+     */
+    public synchronized int maxFindPathLength() {
+        return maxFindPathLength;
+    }
+
+    /**
+     * Number of trials timed.
+     */
+    public synchronized long trials() {
+        return trials;
+    }
+
+    /**
+     * Histogram of the trial durations: entry i is the number of trials which
+     * took between 2^i and 2^(i+1) nanoseconds.
+     */
+    public synchronized long[] trialTimeHistogram() {
+        return trialTimes.clone();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("opened sites            = ").append(openedSites)
+                .append("\ndraws                   = ").append(draws)
+                .append("\nunion calls             = ").append(unionCalls)
+                .append("\nunions                  = ").append(unions)
+                .append("\nfinds                   = ").append(finds)
+                .append("\naverage find path       = ")
+                .append(averageFindPathLength())
+                .append("\nmax find path           = ")
+                .append(maxFindPathLength);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (trialTimes[i] > 0) {
+                builder.append(String.format("%ntrials in [2^%d, 2^%d) ns = %d",
+                        i, i + 1, trialTimes[i]));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -1,6 +1,15 @@
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.StdRandom;
 import edu.princeton.cs.algs4.StdStats;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Perform a series of computational experiments.
@@ -10,22 +19,25 @@ import edu.princeton.cs.algs4.StdStats;
  */
 public class PercolationStats {
 
+    private static final int BATCH_TRIALS = 32;  // trials between two checks
+
+    private static final double CONFIDENCE_95 = 1.96;
+
     private final double[] fractions;
-    private final double CONFIDENCE_95 = 1.96;
+    private final PercolationMetrics metrics;  // null if not instrumented
 
     /**
      * Perform trials independent experiments on an n-by-n grid.
      */
     public PercolationStats(int n, int trials) {
-        if (n <= 0) {
-            throw new IllegalArgumentException("n <= 0.");
-        }
-        if (trials <= 0) {
-            throw new IllegalArgumentException("trials <= 0.");
-        }
+        checkArguments(n, trials);
         fractions = new double[trials];
+        metrics = null;
+        Percolation percolation = new Percolation(n);
         for (int i = 0; i < trials; i++) {
-            Percolation percolation = new Percolation(n);
+            if (i > 0) {
+                percolation.reset();
+            }
             int openedSites = 0;
             while (!percolation.percolates()) {
                 int row = StdRandom.uniform(n) + 1;  // base-1
@@ -39,6 +51,428 @@ public class PercolationStats {
         }
     }
 
+    /**
+     * Perform trials independent experiments on an n-by-n grid, in parallel
+     * on the common fork-join pool.
+     *
+     * @see #PercolationStats(int, int, long, ForkJoinPool)
+     */
+    public PercolationStats(int n, int trials, long seed) {
+        this(n, trials, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Perform trials independent experiments on an n-by-n grid, in parallel
+     * on the given fork-join pool, by opening random sites.
+     *
+     * @see #PercolationStats(int, int, long, ForkJoinPool, Sampling)
+     */
+    public PercolationStats(int n, int trials, long seed, ForkJoinPool pool) {
+        this(n, trials, seed, pool, Sampling.RANDOM_SITES);
+    }
+
+    /**
+     * Perform trials independent experiments on an n-by-n grid, in parallel
+     * on the given fork-join pool.
+     * <p>
+     * The trials are split recursively into halves, and the random generator
+     * of each half is split from the generator of its parent. The shape of
+     * this tree only depends on {@code trials}, so for a given {@code seed}
+     * the results are the same whatever the parallelism of the pool.
+     *
+     * @param seed master seed of the experiments
+     * @param pool fork-join pool running the experiments
+     * @param sampling how the next site to open is chosen
+     */
+    public PercolationStats(int n, int trials, long seed, ForkJoinPool pool,
+            Sampling sampling) {
+        this(n, trials, seed, pool, sampling, false);
+    }
+
+    /**
+     * Perform trials independent experiments on an n-by-n grid, in parallel
+     * on the given fork-join pool, optionally collecting metrics of the
+     * union-find operations and of the trial durations.
+     *
+     * @param instrumented whether to collect metrics
+     * @see #PercolationStats(int, int, long, ForkJoinPool, Sampling)
+     * @see #metrics()
+     */
+    public PercolationStats(int n, int trials, long seed, ForkJoinPool pool,
+            Sampling sampling, boolean instrumented) {
+        checkArguments(n, trials);
+        if (pool == null) {
+            throw new NullPointerException("pool is null.");
+        }
+        if (sampling == null) {
+            throw new NullPointerException("sampling is null.");
+        }
+        fractions = new double[trials];
+        metrics = instrumented ? new PercolationMetrics() : null;
+        pool.invoke(new TrialTask(fractions, 0, trials,
+                new SplittableRandom(seed), sampling, new Buffers(n, metrics)));
+    }
+
+    /**
+     * Perform experiments on an n-by-n grid until the 95% confidence interval
+     * is not wider than {@code width}, or {@code maxTrials} experiments are
+     * done.
+     * <p>
+     * The experiments run in parallel, by batches of a fixed number of
+     * trials. After each batch, the running mean and variance are updated with
+     * Welford's algorithm and the width of the interval is checked. Each batch
+     * has its own random generator split from the master one, so for a given
+     * {@code seed} the results do not depend on the parallelism of the pool.
+     *
+     * @param width target width of the 95% confidence interval
+     * @param maxTrials maximum number of experiments
+     * @param seed master seed of the experiments
+     * @param pool fork-join pool running the experiments
+     * @param sampling how the next site to open is chosen
+     */
+    public PercolationStats(int n, double width, int maxTrials, long seed,
+            ForkJoinPool pool, Sampling sampling) {
+        checkArguments(n, maxTrials);
+        if (!(width > 0)) {
+            throw new IllegalArgumentException("width <= 0.");
+        }
+        if (pool == null) {
+            throw new NullPointerException("pool is null.");
+        }
+        if (sampling == null) {
+            throw new NullPointerException("sampling is null.");
+        }
+        fractions = runBatches(n, width, maxTrials, seed, pool, sampling,
+                null);
+        metrics = null;
+    }
+
+    private PercolationStats(double[] fractions) {
+        this.fractions = fractions;
+        this.metrics = null;
+    }
+
+    /**
+     * Perform experiments like
+     * {@link #PercolationStats(int, double, int, long, ForkJoinPool, Sampling)}
+     * and save the fractions of the completed trials in a new checkpoint file
+     * after each batch, so that the run can be resumed with
+     * {@link #resume(Path, ForkJoinPool)}.
+     *
+     * @param width target width of the 95% confidence interval, or 0 to
+     *        always perform {@code maxTrials} experiments
+     * @param file checkpoint file, which must not exist
+     * @throws IOException if the checkpoint file cannot be written
+     */
+    public static PercolationStats checkpointed(int n, double width,
+            int maxTrials, long seed, ForkJoinPool pool, Sampling sampling,
+            Path file) throws IOException {
+        checkArguments(n, maxTrials);
+        if (!(width >= 0)) {
+            throw new IllegalArgumentException("width < 0.");
+        }
+        if (pool == null) {
+            throw new NullPointerException("pool is null.");
+        }
+        if (sampling == null) {
+            throw new NullPointerException("sampling is null.");
+        }
+        try (PercolationCheckpoint checkpoint = PercolationCheckpoint.create(
+                file, n, maxTrials, width, seed, sampling)) {
+            return run(checkpoint, pool);
+        }
+    }
+
+    /**
+     * Resume the run saved in the given checkpoint file, skipping the trials
+     * already completed. The results are the same as if the run had not been
+     * interrupted.
+     *
+     * @param file checkpoint file created by
+     *        {@link #checkpointed(int, double, int, long, ForkJoinPool,
+     *        Sampling, Path)}
+     * @throws IOException if the checkpoint file cannot be read or written
+     */
+    public static PercolationStats resume(Path file, ForkJoinPool pool)
+            throws IOException {
+        if (pool == null) {
+            throw new NullPointerException("pool is null.");
+        }
+        try (PercolationCheckpoint checkpoint =
+                PercolationCheckpoint.open(file, BATCH_TRIALS)) {
+            return run(checkpoint, pool);
+        }
+    }
+
+    private static PercolationStats run(PercolationCheckpoint checkpoint,
+            ForkJoinPool pool) throws IOException {
+        try {
+            return new PercolationStats(runBatches(checkpoint.n,
+                    checkpoint.width, checkpoint.maxTrials, checkpoint.seed,
+                    pool, checkpoint.sampling, checkpoint));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Run experiments by batches, until the 95% confidence interval is not
+     * wider than {@code width} (if positive) or {@code maxTrials} experiments
+     * are done. The running mean and variance are updated with Welford's
+     * algorithm after each batch.
+     *
+     * @param checkpoint checkpoint holding the completed trials and saving
+     *        the new ones, or null
+     */
+    private static double[] runBatches(int n, double width, int maxTrials,
+            long seed, ForkJoinPool pool, Sampling sampling,
+            PercolationCheckpoint checkpoint) {
+        double[] results = new double[maxTrials];
+        int done = 0;
+        if (checkpoint != null) {
+            double[] completed = checkpoint.completedTrials();
+            System.arraycopy(completed, 0, results, 0, completed.length);
+            done = completed.length;
+        }
+        Buffers buffers = new Buffers(n, null);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < done; i += BATCH_TRIALS) {
+            random.split();  // generator of a completed batch
+        }
+        double mean = 0;
+        double m2 = 0;  // sum of squared deviations from the mean
+        for (int i = 0; i < done; i++) {
+            double delta = results[i] - mean;
+            mean += delta / (i + 1);
+            m2 += delta * (results[i] - mean);
+        }
+        while (done < maxTrials
+                && !(width > 0 && intervalWidth(m2, done) <= width)) {
+            int hi = Math.min(done + BATCH_TRIALS, maxTrials);
+            pool.invoke(new TrialTask(results, done, hi, random.split(),
+                    sampling, buffers));
+            if (checkpoint != null) {
+                checkpoint.append(results, done, hi);
+            }
+            for (; done < hi; done++) {
+                double delta = results[done] - mean;
+                mean += delta / (done + 1);
+                m2 += delta * (results[done] - mean);
+            }
+        }
+        return Arrays.copyOf(results, done);
+    }
+
+    /**
+     * Width of the 95% confidence interval of the given number of trials,
+     * NaN if there are less than two trials.
+     *
+     * @param m2 sum of squared deviations from the mean
+     */
+    private static double intervalWidth(double m2, int trials) {
+        double stddev = Math.sqrt(m2 / (trials - 1));
+        return 2 * CONFIDENCE_95 * stddev / Math.sqrt(trials);
+    }
+
+    private static void checkArguments(int n, int trials) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n <= 0.");
+        }
+        if (trials <= 0) {
+            throw new IllegalArgumentException("trials <= 0.");
+        }
+    }
+
+    /**
+     * Strategy used to choose the next site to open in a trial.
+     */
+    public enum Sampling {
+
+        /**
+         * Draw random sites and skip those which are already open.
+         */
+        RANDOM_SITES,
+
+        /**
+         * Open the sites in the order of a random permutation, shuffled
+         * lazily, so that every draw opens a new site.
+         */
+        PERMUTATION
+    }
+
+    /**
+     * Runs the trials of range [lo, hi) and stores their fractions, reusing
+     * the trial buffers of the run.
+     */
+    private static class TrialTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double[] fractions;
+        private final int lo;
+        private final int hi;
+        private final SplittableRandom random;
+        private final Sampling sampling;
+        private final Buffers buffers;
+
+        TrialTask(double[] fractions, int lo, int hi, SplittableRandom random,
+                Sampling sampling, Buffers buffers) {
+            this.fractions = fractions;
+            this.lo = lo;
+            this.hi = hi;
+            this.random = random;
+            this.sampling = sampling;
+            this.buffers = buffers;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                Trial trial = buffers.borrow();
+                try {
+                    fractions[lo] = trial.run(random, sampling);
+                } finally {
+                    buffers.giveBack(trial);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            SplittableRandom right = random.split();
+            invokeAll(new TrialTask(fractions, lo, mid, random, sampling,
+                            buffers),
+                    new TrialTask(fractions, mid, hi, right, sampling,
+                            buffers));
+        }
+    }
+
+    /**
+     * Trial buffers of a run, shared by its tasks: a task borrows buffers
+     * and gives them back, so there are no more of them than tasks running
+     * at once. Unlike thread-local buffers, they are garbage collected with
+     * the run instead of staying in the pool threads.
+     */
+    private static class Buffers {
+
+        private final int n;
+        private final PercolationMetrics metrics;  // null if not instrumented
+        private final ConcurrentLinkedQueue<Trial> idle =
+                new ConcurrentLinkedQueue<>();
+
+        /**
+         * @param metrics metrics aggregating the ones of every trial, or null
+         */
+        Buffers(int n, PercolationMetrics metrics) {
+            this.n = n;
+            this.metrics = metrics;
+        }
+
+        Trial borrow() {
+            Trial trial = idle.poll();
+            return trial != null ? trial : new Trial(n, metrics);
+        }
+
+        void giveBack(Trial trial) {
+            idle.offer(trial);
+        }
+    }
+
+    /**
+     * Buffers of a single experiment, reused from one trial to the next.
+     */
+    private static class Trial {
+
+        private final int n;
+        private final Percolation percolation;
+        private final PercolationMetrics total;  // null if not instrumented
+        private int[] sites;  // permutation of site indices, created lazily
+
+        Trial(int n, PercolationMetrics total) {
+            this.n = n;
+            this.percolation = new Percolation(n, total != null);
+            this.total = total;
+        }
+
+        /**
+         * Open sites until the system percolates, then return the fraction
+         * of open sites.
+         */
+        double run(SplittableRandom random, Sampling sampling) {
+            if (percolation.numberOfOpenSites() > 0) {
+                percolation.reset();
+            }
+            long start = total != null ? System.nanoTime() : 0;
+            long draws;
+            if (sampling == Sampling.PERMUTATION) {
+                draws = openByPermutation(random);
+            } else {
+                draws = openRandomSites(random);
+            }
+            if (total != null) {
+                PercolationMetrics metrics = percolation.metrics();
+                metrics.recordTrial(System.nanoTime() - start);
+                metrics.recordDraws(draws);
+                total.add(metrics);
+            }
+            return percolation.numberOfOpenSites() * 1.0 / (n * n);
+        }
+
+        /**
+         * @return the number of random sites drawn
+         */
+        private long openRandomSites(SplittableRandom random) {
+            long draws = 0;
+            while (!percolation.percolates()) {
+                int row = random.nextInt(n) + 1;  // base-1
+                int col = random.nextInt(n) + 1;  // base-1
+                draws++;
+                if (!percolation.isOpen(row, col)) {
+                    percolation.open(row, col);
+                }
+            }
+            return draws;
+        }
+
+        /**
+         * Incremental Fisher-Yates shuffle: only the prefix of sites which is
+         * actually opened gets shuffled. The buffer restarts from the identity
+         * so that the result does not depend on previous trials of the worker.
+         *
+         * @return the number of random sites drawn
+         */
+        private long openByPermutation(SplittableRandom random) {
+            if (sites == null) {
+                sites = new int[n * n];
+            }
+            for (int i = 0; i < sites.length; i++) {
+                sites[i] = i;
+            }
+            int i = 0;
+            for (; !percolation.percolates(); i++) {
+                int j = i + random.nextInt(sites.length - i);
+                int site = sites[j];
+                sites[j] = sites[i];
+                sites[i] = site;
+                percolation.openSite(site);
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Metrics aggregated over all the experiments, or null if they were not
+     * collected.
+     */
+    public PercolationMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Number of experiments performed.
+     */
+    public int trials() {
+        return fractions.length;
+    }
+
     /**
      * Sample mean of percolation threshold.
      */
@@ -69,13 +503,74 @@ public class PercolationStats {
 
     /**
      * test client (described below)
+     * <p>
+     * Usage: {@code PercolationStats n trials [seed [threads [sampling
+     * [width [checkpoint]]]]]}. When a seed is given, the trials run in
+     * parallel. The sampling is one of {@code RANDOM_SITES} (default) or
+     * {@code PERMUTATION}. When a positive width is given, the experiments
+     * stop as soon as the 95% confidence interval is not wider,
+     * {@code trials} being the maximum number of experiments. When a
+     * checkpoint file is given, the completed trials are saved in it, and
+     * {@code PercolationStats resume checkpoint [threads]} resumes the run.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+
+        if (args[0].equals("resume")) {
+            Path file = Paths.get(args[1]);
+            if (args.length > 2) {
+                ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(args[2]));
+                try {
+                    print(resume(file, pool), -1);
+                } finally {
+                    pool.shutdown();
+                }
+            } else {
+                print(resume(file, ForkJoinPool.commonPool()), -1);
+            }
+            return;
+        }
 
         int n = Integer.parseInt(args[0]);
         int trials = Integer.parseInt(args[1]);
-        PercolationStats stats = new PercolationStats(n, trials);
+        PercolationStats stats;
+        if (args.length == 2) {
+            stats = new PercolationStats(n, trials);
+        } else if (args.length == 3) {
+            long seed = Long.parseLong(args[2]);
+            stats = new PercolationStats(n, trials, seed);
+        } else {
+            long seed = Long.parseLong(args[2]);
+            ForkJoinPool pool = new ForkJoinPool(Integer.parseInt(args[3]));
+            Sampling sampling = args.length > 4
+                    ? Sampling.valueOf(args[4]) : Sampling.RANDOM_SITES;
+            try {
+                if (args.length > 6) {
+                    double width = Double.parseDouble(args[5]);
+                    stats = checkpointed(n, width, trials, seed, pool,
+                            sampling, Paths.get(args[6]));
+                } else if (args.length > 5) {
+                    double width = Double.parseDouble(args[5]);
+                    stats = new PercolationStats(n, width, trials, seed, pool,
+                            sampling);
+                } else {
+                    stats = new PercolationStats(n, trials, seed, pool,
+                            sampling);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+        print(stats, trials);
+    }
 
+    /**
+     * Print the statistics, and the number of trials if it is not the
+     * requested one.
+     */
+    private static void print(PercolationStats stats, int trials) {
+        if (stats.trials() != trials) {
+            StdOut.println("trials                  = " + stats.trials());
+        }
         StdOut.println("mean                    = " + stats.mean());
         StdOut.println("stddev                  = " + stats.stddev());
         StdOut.println("95% confidence interval = "
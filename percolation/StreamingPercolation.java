@@ -0,0 +1,280 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Percolation check of a static grid read one row at a time, using the
+ * Hoshen-Kopelman algorithm. Only the labels of the previous and the current
+ * rows are kept, together with an equivalence table of the clusters which
+ * touch the current row. After each row, the labels are compacted and the
+ * clusters which do not reach the row any more are counted as finished, so
+ * the memory is O(n) whatever the number of rows.
+ *
+ * @author Mincong Huang
+ */
+public class StreamingPercolation {
+
+    private final int n;
+    private int[] previous;  // compact labels of the previous row, 0 = blocked
+    private int[] current;
+
+    // equivalence table, indexed by label
+    private int[] parent;
+    private long[] size;
+    private boolean[] top;
+    private int[] nextParent;
+    private long[] nextSize;
+    private boolean[] nextTop;
+    private final int[] relabel;
+    private int labelCount;
+
+    private long rows;
+    private long openCount;
+    private long finishedClusters;
+    private long finishedLargest;
+    private long aliveLargest;
+    private boolean percolates;
+
+    /**
+     * Create an empty grid having n columns.
+     *
+     * @param n width of the grid
+     */
+    public StreamingPercolation(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be greater than 0.");
+        }
+        this.n = n;
+        previous = new int[n];
+        current = new int[n];
+        // at most ceil(n / 2) clusters per row, old and new ones
+        int capacity = n + 2;
+        parent = new int[capacity];
+        size = new long[capacity];
+        top = new boolean[capacity];
+        nextParent = new int[capacity];
+        nextSize = new long[capacity];
+        nextTop = new boolean[capacity];
+        relabel = new int[capacity];
+    }
+
+    /**
+     * Append the next row to the bottom of the grid.
+     *
+     * @param row open sites of the row, from left to right
+     */
+    public void addRow(boolean[] row) {
+        if (row == null) {
+            throw new NullPointerException("row is null.");
+        }
+        if (row.length != n) {
+            throw new IllegalArgumentException("row length must be " + n + ".");
+        }
+        int next = labelCount + 1;
+        for (int c = 0; c < n; c++) {
+            if (!row[c]) {
+                current[c] = 0;
+                continue;
+            }
+            openCount++;
+            int up = previous[c];
+            int left = c > 0 ? current[c - 1] : 0;
+            int label;
+            if (up == 0 && left == 0) {
+                label = next++;
+                parent[label] = label;
+                size[label] = 0;
+                top[label] = rows == 0;
+            } else if (up == 0) {
+                label = find(left);
+            } else if (left == 0) {
+                label = find(up);
+            } else {
+                label = union(up, left);
+            }
+            size[label]++;
+            current[c] = label;
+        }
+        compact(next);
+        int[] swap = previous;
+        previous = current;
+        current = swap;
+        rows++;
+    }
+
+    /**
+     * Renumber the clusters touching the current row as 1, 2, ..., and
+     * account for the ones which are finished.
+     *
+     * @param next first unused label of the table
+     */
+    private void compact(int next) {
+        int alive = 0;
+        for (int c = 0; c < n; c++) {
+            if (current[c] == 0) {
+                continue;
+            }
+            int root = find(current[c]);
+            if (relabel[root] == 0) {
+                relabel[root] = ++alive;
+                nextParent[alive] = alive;
+                nextSize[alive] = size[root];
+                nextTop[alive] = top[root];
+            }
+            current[c] = relabel[root];
+        }
+        for (int label = 1; label < next; label++) {
+            if (parent[label] == label && relabel[label] == 0) {
+                finishedClusters++;
+                finishedLargest = Math.max(finishedLargest, size[label]);
+            }
+            relabel[label] = 0;
+        }
+
+        int[] swapParent = parent;
+        parent = nextParent;
+        nextParent = swapParent;
+        long[] swapSize = size;
+        size = nextSize;
+        nextSize = swapSize;
+        boolean[] swapTop = top;
+        top = nextTop;
+        nextTop = swapTop;
+        labelCount = alive;
+
+        percolates = false;
+        aliveLargest = 0;
+        for (int label = 1; label <= alive; label++) {
+            percolates |= top[label];
+            aliveLargest = Math.max(aliveLargest, size[label]);
+        }
+    }
+
+    private int find(int label) {
+        int root = label;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        // path compression
+        while (label != root) {
+            int next = parent[label];
+            parent[label] = root;
+            label = next;
+        }
+        return root;
+    }
+
+    private int union(int labelA, int labelB) {
+        int rootA = find(labelA);
+        int rootB = find(labelB);
+        if (rootA == rootB) {
+            return rootA;
+        }
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        top[rootA] |= top[rootB];
+        return rootA;
+    }
+
+    /**
+     * Number of rows read so far
+     */
+    public long numberOfRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of open sites
+     */
+    public long numberOfOpenSites() {
+        return openCount;
+    }
+
+    /**
+     * Number of clusters of open sites
+     */
+    public long numberOfClusters() {
+        return finishedClusters + labelCount;
+    }
+
+    /**
+     * Number of sites of the largest cluster
+     */
+    public long largestCluster() {
+        return Math.max(finishedLargest, aliveLargest);
+    }
+
+    /**
+     * Does the system percolate, considering the last row read as the bottom?
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * Read a grid from a stream: the width n, then the sites row by row as
+     * characters '1' (open) and '0' (blocked). Whitespace is ignored.
+     */
+    public static StreamingPercolation read(InputStream input)
+            throws IOException {
+        InputStream in = new BufferedInputStream(input, 1 << 16);
+        int n = 0;
+        int b = in.read();
+        while (b != -1 && Character.isWhitespace(b)) {
+            b = in.read();
+        }
+        while (b >= '0' && b <= '9') {
+            n = n * 10 + (b - '0');
+            b = in.read();
+        }
+        StreamingPercolation percolation = new StreamingPercolation(n);
+        boolean[] row = new boolean[n];
+        int col = 0;
+        while ((b = in.read()) != -1) {
+            if (b == '0' || b == '1') {
+                row[col++] = b == '1';
+                if (col == n) {
+                    percolation.addRow(row);
+                    col = 0;
+                }
+            } else if (!Character.isWhitespace(b)) {
+                throw new IllegalArgumentException(
+                        "Unexpected character: " + (char) b);
+            }
+        }
+        if (col != 0) {
+            throw new IllegalArgumentException("The last row is incomplete.");
+        }
+        return percolation;
+    }
+
+    /**
+     * Reads the grid from the file given as argument, or from standard input.
+     * <p>
+     * Usage: {@code StreamingPercolation [file]}
+     */
+    public static void main(String[] args) throws IOException {
+
+        StreamingPercolation percolation;
+        if (args.length > 0) {
+            try (InputStream in = new FileInputStream(args[0])) {
+                percolation = read(in);
+            }
+        } else {
+            percolation = read(System.in);
+        }
+
+        StdOut.println("percolates              = " + percolation.percolates());
+        StdOut.println("clusters                = "
+                + percolation.numberOfClusters());
+        StdOut.println("largest cluster         = "
+                + percolation.largestCluster());
+    }
+}
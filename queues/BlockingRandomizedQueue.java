@@ -0,0 +1,328 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, blocking, thread-safe randomized queue, e.g. a shuffle buffer
+ * between producer and consumer threads.
+ * <p>
+ * The items are spread over several stripes, each one a small randomized
+ * queue guarded by its own lock: a thread adds an item to a random stripe
+ * and removes a random item of a random non-empty stripe, skipping the
+ * stripes locked by other threads. So concurrent operations rarely contend.
+ * Since items are spread uniformly over the stripes, the removal order is
+ * close to, but not exactly, a uniform random order.
+ * <p>
+ * Two semaphores count the free space and the available items: a thread
+ * first reserves a permit, then finds a stripe. Blocking only relies on
+ * {@code java.util.concurrent} locks, never on monitors, so that virtual
+ * threads waiting for the queue do not pin their carrier thread.
+ *
+ * @author Mincong Huang
+ */
+public class BlockingRandomizedQueue<Item> {
+
+    private final Stripe<Item>[] stripes;
+    private final Semaphore space;
+    private final Semaphore items = new Semaphore(0);
+    private final int capacity;
+
+    private static final class Stripe<Item> {
+
+        final ReentrantLock lock = new ReentrantLock();
+        Item[] array;
+        int size;
+
+        Stripe() {
+            @SuppressWarnings("unchecked")
+            Item[] a = (Item[]) new Object[2];
+            array = a;
+        }
+
+        void add(Item item) {
+            if (size == array.length) {
+                @SuppressWarnings("unchecked")
+                Item[] a = (Item[]) new Object[array.length * 2];
+                System.arraycopy(array, 0, a, 0, size);
+                array = a;
+            }
+            array[size++] = item;
+        }
+
+        Item removeRandom() {
+            int i = ThreadLocalRandom.current().nextInt(size);
+            Item removed = array[i];
+            array[i] = array[--size];
+            array[size] = null;
+            return removed;
+        }
+    }
+
+    /**
+     * Construct an empty queue holding at most capacity items, with one
+     * stripe per available processor
+     */
+    public BlockingRandomizedQueue(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construct an empty queue holding at most capacity items, spread over
+     * the given number of stripes
+     */
+    public BlockingRandomizedQueue(int capacity, int stripeCount) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0: " + capacity);
+        }
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException(
+                    "stripeCount <= 0: " + stripeCount);
+        }
+        @SuppressWarnings("unchecked")
+        Stripe<Item>[] s = (Stripe<Item>[]) new Stripe<?>[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            s[i] = new Stripe<>();
+        }
+        stripes = s;
+        space = new Semaphore(capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Return the maximum number of items on the queue
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Return the number of items on the queue. Items being added or removed
+     * concurrently may or may not be counted.
+     */
+    public int size() {
+        return items.availablePermits();
+    }
+
+    /**
+     * Is the queue empty?
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Add the item, waiting for space if the queue is full
+     */
+    public void put(Item item) throws InterruptedException {
+        checkItem(item);
+        space.acquire();
+        insert(item);
+    }
+
+    /**
+     * Add the item if the queue is not full. Return whether it was added.
+     */
+    public boolean offer(Item item) {
+        checkItem(item);
+        if (!space.tryAcquire()) {
+            return false;
+        }
+        insert(item);
+        return true;
+    }
+
+    /**
+     * Add the item, waiting at most the given time for space if the queue is
+     * full. Return whether it was added.
+     */
+    public boolean offer(Item item, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkItem(item);
+        if (!space.tryAcquire(timeout, unit)) {
+            return false;
+        }
+        insert(item);
+        return true;
+    }
+
+    /**
+     * Remove and return a random item, waiting for one if the queue is empty
+     */
+    public Item take() throws InterruptedException {
+        items.acquire();
+        return extract();
+    }
+
+    /**
+     * Remove and return a random item, or null if the queue is empty
+     */
+    public Item poll() {
+        return items.tryAcquire() ? extract() : null;
+    }
+
+    /**
+     * Remove and return a random item, waiting at most the given time for one
+     * if the queue is empty. Return null if the time elapsed.
+     */
+    public Item poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return items.tryAcquire(timeout, unit) ? extract() : null;
+    }
+
+    private static void checkItem(Object item) {
+        if (item == null) {
+            throw new NullPointerException("Element e cannot be null.");
+        }
+    }
+
+    /**
+     * Add the item to a random stripe, preferring one which is not locked.
+     * The caller holds a space permit.
+     */
+    private void insert(Item item) {
+        int start = ThreadLocalRandom.current().nextInt(stripes.length);
+        Stripe<Item> stripe = null;
+        for (int i = 0; i < stripes.length && stripe == null; i++) {
+            Stripe<Item> s = stripes[(start + i) % stripes.length];
+            if (s.lock.tryLock()) {
+                stripe = s;
+            }
+        }
+        if (stripe == null) {
+            stripe = stripes[start];
+            stripe.lock.lock();
+        }
+        try {
+            stripe.add(item);
+        } finally {
+            stripe.lock.unlock();
+        }
+        items.release();
+    }
+
+    /**
+     * Remove a random item of a random non-empty stripe. The caller holds an
+     * item permit, so there is at least one item which no other thread can
+     * take.
+     */
+    private Item extract() {
+        int start = ThreadLocalRandom.current().nextInt(stripes.length);
+        for (int round = 0; ; round++) {
+            for (int i = 0; i < stripes.length; i++) {
+                Stripe<Item> stripe = stripes[(start + i) % stripes.length];
+                // skip locked stripes in the first round only
+                if (round == 0) {
+                    if (!stripe.lock.tryLock()) {
+                        continue;
+                    }
+                } else {
+                    stripe.lock.lock();
+                }
+                try {
+                    if (stripe.size > 0) {
+                        Item item = stripe.removeRandom();
+                        space.release();
+                        return item;
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Unit testing, then stress test: producers put distinct items while
+     * consumers take them. Every item must be taken exactly once.
+     * <p>
+     * Usage: {@code BlockingRandomizedQueue [items [producers [consumers]]]}
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int producerCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int consumerCount = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        StdOut.println("Tests start.");
+
+        // Test 1: public operations
+        BlockingRandomizedQueue<Integer> q1 =
+                new BlockingRandomizedQueue<>(2, 4);
+        StdOut.println("Test 1A passed? " + q1.isEmpty());
+        StdOut.println("Test 1B passed? " + q1.offer(1));
+        q1.put(2);
+        StdOut.println("Test 1C passed? " + (q1.size() == 2));
+        StdOut.println("Test 1D passed? " + !q1.offer(3));
+        StdOut.println("Test 1E passed? "
+                + !q1.offer(3, 10, TimeUnit.MILLISECONDS));
+        int test1F = q1.take() + q1.take();
+        StdOut.println("Test 1F passed? " + (test1F == 3));
+        StdOut.println("Test 1G passed? " + (q1.poll() == null));
+        StdOut.println("Test 1H passed? "
+                + (q1.poll(10, TimeUnit.MILLISECONDS) == null));
+
+        // Test 2: exceptions
+        try {
+            new BlockingRandomizedQueue<Integer>(0);
+            StdOut.println("Test 2A passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof IllegalArgumentException;
+            StdOut.println("Test 2A passed? " + result);
+        }
+        try {
+            q1.put(null);
+            StdOut.println("Test 2B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NullPointerException;
+            StdOut.println("Test 2B passed? " + result);
+        }
+
+        // Test 3: stress
+        BlockingRandomizedQueue<Integer> q3 =
+                new BlockingRandomizedQueue<>(1024);
+        AtomicIntegerArray taken = new AtomicIntegerArray(n);
+        Thread[] threads = new Thread[producerCount + consumerCount];
+        for (int p = 0; p < producerCount; p++) {
+            int first = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    for (int i = first; i < n; i += producerCount) {
+                        q3.put(i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        for (int c = 0; c < consumerCount; c++) {
+            // consumers share the n items
+            int count = n / consumerCount + (c < n % consumerCount ? 1 : 0);
+            threads[producerCount + c] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        taken.incrementAndGet(q3.take());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        boolean exactlyOnce = true;
+        for (int i = 0; i < n; i++) {
+            exactlyOnce &= taken.get(i) == 1;
+        }
+        StdOut.println("Test 3A passed? " + exactlyOnce);
+        StdOut.println("Test 3B passed? " + q3.isEmpty());
+        StdOut.println("Test 3C passed? " + (q3.poll() == null));
+
+        StdOut.println("Tests finished.");
+    }
+}
@@ -0,0 +1,78 @@
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Throughput of {@link BlockingRandomizedQueue} with p producers and p
+ * consumers, for p = 1, 2, 4, ..., 64: the producers put n items in total
+ * and the consumers take them. The striped queue is compared with a queue
+ * of a single stripe, i.e. a single lock.
+ * <p>
+ * Usage: {@code BlockingRandomizedQueueBenchmark [n [capacity [stripes]]]},
+ * 2,000,000 items, a capacity of 1024 and one stripe per available processor
+ * by default.
+ *
+ * @author Mincong Huang
+ */
+public class BlockingRandomizedQueueBenchmark {
+
+    private static final Integer ITEM = 42;
+
+    private static final int MAX_THREADS = 64;
+
+    public static void main(String[] args) throws InterruptedException {
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int stripes = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+
+        StdOut.printf("%9s %16s %16s%n", "threads", "1 stripe",
+                stripes + " stripes");
+        for (int p = 1; p <= MAX_THREADS; p *= 2) {
+            double single = throughput(
+                    new BlockingRandomizedQueue<>(capacity, 1), n, p);
+            double striped = throughput(
+                    new BlockingRandomizedQueue<>(capacity, stripes), n, p);
+            StdOut.printf("%4d + %-2d %10.2f Mops/s %10.2f Mops/s%n",
+                    p, p, single, striped);
+        }
+    }
+
+    /**
+     * Puts n items with p producers and takes them with p consumers, in
+     * millions of items per second.
+     */
+    private static double throughput(BlockingRandomizedQueue<Integer> queue,
+            int n, int p) throws InterruptedException {
+        Thread[] threads = new Thread[2 * p];
+        for (int i = 0; i < p; i++) {
+            // each producer and each consumer handles its share of n items
+            int count = n / p + (i < n % p ? 1 : 0);
+            threads[i] = new Thread(() -> {
+                try {
+                    for (int j = 0; j < count; j++) {
+                        queue.put(ITEM);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[p + i] = new Thread(() -> {
+                try {
+                    for (int j = 0; j < count; j++) {
+                        queue.take();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return n * 1000.0 / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,181 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Feeds the whitespace-separated tokens of a file or a stream to a
+ * {@link StreamSampler}, scanning token boundaries directly over the bytes.
+ * A token is only decoded to a string if the sampler wants it, so almost no
+ * memory is allocated per token: files are memory-mapped, and streams are
+ * read through one reusable buffer.
+ * <p>
+ * Tokens are decoded as UTF-8. Separators are the ASCII characters which
+ * {@code Character.isWhitespace} accepts, as for {@code StdIn.readString()},
+ * but not the non-ASCII whitespace characters.
+ *
+ * @author Mincong Huang
+ */
+public class ByteTokenizer {
+
+    private static final int CHUNK_BYTES = 1 << 30;  // mapped at once
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private static final boolean[] WHITESPACE = new boolean[256];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            WHITESPACE[c] = Character.isWhitespace(c);
+        }
+    }
+
+    private final StreamSampler<String> sampler;
+    private boolean inToken;
+    private boolean wanted;  // whether the current token is wanted
+    private byte[] pending = new byte[64];  // wanted token across chunks
+    private int pendingLength;
+
+    private ByteTokenizer(StreamSampler<String> sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * Feed the tokens of the file to the sampler
+     */
+    public static void sample(Path file, StreamSampler<String> sampler)
+            throws IOException {
+        ByteTokenizer tokenizer = new ByteTokenizer(sampler);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size;
+                    position += CHUNK_BYTES) {
+                long length = Math.min(CHUNK_BYTES, size - position);
+                tokenizer.scan(channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, length));
+            }
+        }
+        tokenizer.finish();
+    }
+
+    /**
+     * Feed the tokens of the stream to the sampler, until the end of the
+     * stream
+     */
+    public static void sample(InputStream in, StreamSampler<String> sampler)
+            throws IOException {
+        ByteTokenizer tokenizer = new ByteTokenizer(sampler);
+        byte[] buffer = new byte[BUFFER_BYTES];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            tokenizer.scan(ByteBuffer.wrap(buffer, 0, n));
+        }
+        tokenizer.finish();
+    }
+
+    /**
+     * Scan the bytes of the chunk, from its position to its limit.
+     */
+    private void scan(ByteBuffer chunk) {
+        int limit = chunk.limit();
+        int start = chunk.position();  // start of the current token
+        for (int i = start; i < limit; i++) {
+            boolean separator = WHITESPACE[chunk.get(i) & 0xff];
+            if (inToken && separator) {
+                endToken(chunk, start, i);
+            } else if (!inToken && !separator) {
+                inToken = true;
+                wanted = sampler.wantsNext();
+                start = i;
+            }
+        }
+        if (inToken && wanted) {
+            append(chunk, start, limit);
+        }
+    }
+
+    private void endToken(ByteBuffer chunk, int start, int end) {
+        inToken = false;
+        if (!wanted) {
+            sampler.skip();
+            return;
+        }
+        append(chunk, start, end);
+        sampler.offer(new String(pending, 0, pendingLength,
+                StandardCharsets.UTF_8));
+        pendingLength = 0;
+    }
+
+    private void append(ByteBuffer chunk, int start, int end) {
+        int length = end - start;
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending,
+                    Math.max(pending.length * 2, pendingLength + length));
+        }
+        ByteBuffer source = chunk.duplicate();
+        source.position(start);
+        source.get(pending, pendingLength, length);
+        pendingLength += length;
+    }
+
+    private void finish() {
+        if (inToken) {
+            endToken(ByteBuffer.allocate(0), 0, 0);
+        }
+    }
+
+    /**
+     * Unit testing.
+     */
+    public static void main(String[] args) throws IOException {
+
+        StdOut.println("Tests start.");
+
+        // Test 1: tokens of a stream read 3 bytes at a time, with a
+        // reservoir larger than the input
+        String text = "  AA\tBB\n\nCC DD\u00e9  EE";
+        ReservoirSampler<String> s1 = new ReservoirSampler<>(10, 42);
+        sample(new ByteArrayInputStream(
+                text.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        }, s1);
+        List<String> test1A = s1.sample();
+        test1A.sort(null);
+        StdOut.println("Test 1A passed? " + test1A.toString()
+                .equals("[AA, BB, CC, DD\u00e9, EE]"));
+
+        // Test 2: tokens of a file, with a reservoir smaller than the input
+        Path file = Files.createTempFile("tokens", ".txt");
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            builder.append(i).append(i % 10 == 0 ? '\n' : ' ');
+        }
+        Files.write(file, builder.toString().getBytes(StandardCharsets.UTF_8));
+        ReservoirSampler<String> s2 = new ReservoirSampler<>(10, 42);
+        sample(file, s2);
+        boolean test2A = s2.count() == 100_000 && s2.size() == 10;
+        for (String token : s2.sample()) {
+            int i = Integer.parseInt(token);
+            test2A &= 0 <= i && i < 100_000;
+        }
+        StdOut.println("Test 2A passed? " + test2A);
+        WeightedReservoirSampler<String> s3 =
+                new WeightedReservoirSampler<>(3, 42);
+        sample(file, s3);
+        StdOut.println("Test 2B passed? " + (s3.count() == 100_000));
+        Files.delete(file);
+
+        StdOut.println("Tests finished.");
+    }
+}
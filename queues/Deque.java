@@ -1,35 +1,37 @@
 import edu.princeton.cs.algs4.StdOut;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
+ * A double-ended queue backed by a circular array. The capacity is always a
+ * power of two, so that indices wrap around with a mask. The array doubles
+ * when it is full and halves when it is only 25% full, so every operation
+ * takes constant amortized time and no object is allocated per item.
+ *
  * @author Mincong Huang
  */
 public class Deque<Item> implements Iterable<Item> {
 
-    private Node head;
-    private Node tail;
-    private int size;
-
-    private class Node {
-
-        Item item;
-        Node prev;
-        Node next;
+    private static final int MIN_CAPACITY = 8;
 
-        Node(Item item) {
-            this.item = item;
-        }
-    }
+    private Item[] array;
+    private int head;  // index of the first item
+    private int size;
+    private int modCount;
 
     /**
      * Construct an empty deque
      */
     public Deque() {
-        head = new Node(null);  // dummy head
-        tail = new Node(null);  // dummy tail
-        head.next = tail;
-        tail.prev = head;
+        // Type Item is only known at runtime.
+        @SuppressWarnings("unchecked")
+        Item[] a = (Item[]) new Object[MIN_CAPACITY];
+        array = a;
     }
 
     /**
@@ -53,12 +55,13 @@ public class Deque<Item> implements Iterable<Item> {
         if (item == null) {
             throw new NullPointerException("Element e cannot be null.");
         }
-        Node node = new Node(item);
-        node.next = head.next;
-        node.prev = head;
-        head.next.prev = node;
-        head.next = node;
+        if (size == array.length) {
+            resize(array.length * 2);
+        }
+        head = (head - 1) & (array.length - 1);
+        array[head] = item;
         size++;
+        modCount++;
     }
 
     /**
@@ -68,12 +71,12 @@ public class Deque<Item> implements Iterable<Item> {
         if (item == null) {
             throw new NullPointerException("Element e connot be null.");
         }
-        Node node = new Node(item);
-        node.next = tail;
-        node.prev = tail.prev;
-        tail.prev.next = node;
-        tail.prev = node;
+        if (size == array.length) {
+            resize(array.length * 2);
+        }
+        array[(head + size) & (array.length - 1)] = item;
         size++;
+        modCount++;
     }
 
     /**
@@ -83,11 +86,13 @@ public class Deque<Item> implements Iterable<Item> {
         if (size == 0) {
             throw new NoSuchElementException("Deque is empty.");
         }
-        Node node = head.next;
-        head.next = node.next;
-        head.next.prev = head;
+        Item item = array[head];
+        array[head] = null;
+        head = (head + 1) & (array.length - 1);
         size--;
-        return node.item;
+        modCount++;
+        shrinkIfSparse();
+        return item;
     }
 
     /**
@@ -97,15 +102,40 @@ public class Deque<Item> implements Iterable<Item> {
         if (size == 0) {
             throw new NoSuchElementException("Deque is empty.");
         }
-        Node node = tail.prev;
-        tail.prev = node.prev;
-        tail.prev.next = tail;
+        int last = (head + size - 1) & (array.length - 1);
+        Item item = array[last];
+        array[last] = null;
         size--;
-        return node.item;
+        modCount++;
+        shrinkIfSparse();
+        return item;
+    }
+
+    // resize array if it is only 25% full
+    private void shrinkIfSparse() {
+        if (array.length > MIN_CAPACITY && size == array.length / 4) {
+            resize(array.length / 2);
+        }
+    }
+
+    /**
+     * Copy the items to a new array of the given capacity, the first one at
+     * index 0.
+     */
+    private void resize(int newCapacity) {
+        @SuppressWarnings("unchecked")
+        Item[] newArray = (Item[]) new Object[newCapacity];
+        int firstPart = Math.min(size, array.length - head);
+        System.arraycopy(array, head, newArray, 0, firstPart);
+        System.arraycopy(array, 0, newArray, firstPart, size - firstPart);
+        array = newArray;
+        head = 0;
     }
 
     /**
-     * Return an iterator over items in order from front to end
+     * Return an iterator over items in order from front to end. The iterator
+     * is fail-fast: it throws a {@code ConcurrentModificationException} if the
+     * deque is modified after its creation.
      */
     @Override
     public Iterator<Item> iterator() {
@@ -114,20 +144,23 @@ public class Deque<Item> implements Iterable<Item> {
 
     private class HeadFirstIterator implements Iterator<Item> {
 
-        private Node curr = head;
+        private final int expectedModCount = modCount;
+        private int i;
 
         @Override
         public boolean hasNext() {
-            return curr.next != tail;
+            return i < size;
         }
 
         @Override
         public Item next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
             if (!hasNext()) {
                 throw new NoSuchElementException("No more item.");
             }
-            curr = curr.next;
-            return curr.item;
+            return array[(head + i++) & (array.length - 1)];
         }
 
         @Override
@@ -136,6 +169,94 @@ public class Deque<Item> implements Iterable<Item> {
         }
     }
 
+    /**
+     * Return a spliterator over items in order from front to end. It splits
+     * the range of indices in halves, so parallel streams are balanced. Like
+     * the iterator, it is fail-fast.
+     */
+    @Override
+    public Spliterator<Item> spliterator() {
+        return new HeadFirstSpliterator(0, size, modCount);
+    }
+
+    /**
+     * Return a sequential stream over items in order from front to end
+     */
+    public Stream<Item> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Return a parallel stream over items in order from front to end
+     */
+    public Stream<Item> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    private class HeadFirstSpliterator implements Spliterator<Item> {
+
+        private final int expectedModCount;
+        private int i;            // next index, from the front
+        private final int fence;  // end index, exclusive
+
+        HeadFirstSpliterator(int i, int fence, int expectedModCount) {
+            this.i = i;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (action == null) {
+                throw new NullPointerException("action is null.");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (i >= fence) {
+                return false;
+            }
+            action.accept(array[(head + i++) & (array.length - 1)]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Item> action) {
+            if (action == null) {
+                throw new NullPointerException("action is null.");
+            }
+            Item[] a = array;
+            int mask = a.length - 1;
+            for (; i < fence; i++) {
+                action.accept(a[(head + i) & mask]);
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public Spliterator<Item> trySplit() {
+            int lo = i;
+            int mid = (lo + fence) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+            i = mid;
+            return new HeadFirstSpliterator(lo, mid, expectedModCount);
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - i;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     /**
      * Serialization of the queue.
      *
@@ -204,11 +325,11 @@ public class Deque<Item> implements Iterable<Item> {
             StdOut.println("Test 2C passed? " + false);
         } catch (Exception e) {
             boolean result = e instanceof NullPointerException;
-            StdOut.println("Test 2C passed? " + result); 
+            StdOut.println("Test 2C passed? " + result);
         }
         try {
             d2.addLast(null);
-            StdOut.println("Test 2D passed? " + false); 
+            StdOut.println("Test 2D passed? " + false);
         } catch (Exception e) {
             boolean result = e instanceof NullPointerException;
             StdOut.println("Test 2D passed? " + result);
@@ -227,6 +348,16 @@ public class Deque<Item> implements Iterable<Item> {
             boolean result = e instanceof NoSuchElementException;
             StdOut.println("Test 2G passed? " + result);
         }
+        try {
+            d2.addLast(1);
+            Iterator<Integer> it = d2.iterator();
+            d2.addLast(2);
+            it.next();
+            StdOut.println("Test 2H passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof ConcurrentModificationException;
+            StdOut.println("Test 2H passed? " + result);
+        }
 
         // Test 3: types
         Deque<String> d3a = new Deque<>();
@@ -236,6 +367,45 @@ public class Deque<Item> implements Iterable<Item> {
         d3b.addLast(3.1415926);
         StdOut.println("Test 3B passed? " + true);
 
+        // Test 4: wrap-around and resizing
+        Deque<Integer> d4 = new Deque<>();
+        for (int i = 0; i < 20; i++) {
+            d4.addFirst(-i);
+            d4.addLast(i);
+        }
+        StdOut.println("Test 4A passed? " + (d4.size() == 40));
+        String test4B = "";
+        for (int i = -19; i <= 19; i++) {
+            test4B += "," + i + (i == 0 ? ",0" : "");
+        }
+        StdOut.println("Test 4B passed? "
+                + d4.toString().equals("[" + test4B.substring(1) + "]"));
+        for (int i = 0; i < 38; i++) {
+            d4.removeLast();
+        }
+        StdOut.println("Test 4C passed? " + d4.toString().equals("[-19,-18]"));
+
+        // Test 5: streams
+        Deque<Integer> d5 = new Deque<>();
+        for (int i = 0; i < 1000; i++) {
+            d5.addFirst(-i);
+            d5.addLast(i);
+        }
+        StdOut.println("Test 5A passed? "
+                + (d5.parallelStream().mapToLong(i -> i).sum() == 0));
+        StdOut.println("Test 5B passed? " + (d5.parallelStream()
+                .filter(i -> i > 0).count() == 999));
+        Integer[] test5C = d5.parallelStream().toArray(Integer[]::new);
+        boolean inOrder = test5C.length == 2000;
+        for (int i = 1; i < test5C.length; i++) {
+            inOrder &= test5C[i - 1] <= test5C[i];
+        }
+        StdOut.println("Test 5C passed? " + inOrder);
+        Spliterator<Integer> test5D = d5.spliterator();
+        Spliterator<Integer> prefix = test5D.trySplit();
+        StdOut.println("Test 5D passed? " + (prefix.estimateSize() == 1000
+                && test5D.estimateSize() == 1000));
+
         StdOut.println("Tests finished.");
     }
 }
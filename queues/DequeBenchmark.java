@@ -0,0 +1,110 @@
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Compares the array-based {@link Deque} with the linked {@link LinkedDeque}:
+ * throughput of pushing and popping n items at both ends, and heap footprint
+ * of a deque holding n items. The same item is pushed n times, so that only
+ * the memory of the deque itself is measured.
+ * <p>
+ * Usage: {@code DequeBenchmark [n [rounds]]}, 10,000,000 items and 5 rounds
+ * by default. Run it with a heap large enough for n items, e.g.
+ * {@code -Xmx2g}.
+ *
+ * @author Mincong Huang
+ */
+public class DequeBenchmark {
+
+    private static final Integer ITEM = 42;
+
+    private static long sink;  // prevents dead code elimination
+
+    public static void main(String[] args) {
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (int round = 1; round <= rounds; round++) {
+            StdOut.printf("round %d%n", round);
+            StdOut.printf("  array  push/pop: %8.1f Mops/s%n",
+                    throughputOfArray(n));
+            StdOut.printf("  linked push/pop: %8.1f Mops/s%n",
+                    throughputOfLinked(n));
+        }
+        StdOut.printf("array  footprint: %6.1f bytes/item%n",
+                footprintOfArray(n));
+        StdOut.printf("linked footprint: %6.1f bytes/item%n",
+                footprintOfLinked(n));
+        StdOut.println("checksum: " + sink);
+    }
+
+    /**
+     * Pushes n items at the end and pops them from the front, then pushes
+     * them at the front and pops them from the end, in millions of
+     * operations per second.
+     */
+    private static double throughputOfArray(int n) {
+        long start = System.nanoTime();
+        Deque<Integer> deque = new Deque<>();
+        for (int i = 0; i < n; i++) {
+            deque.addLast(ITEM);
+        }
+        for (int i = 0; i < n; i++) {
+            sink += deque.removeFirst();
+        }
+        for (int i = 0; i < n; i++) {
+            deque.addFirst(ITEM);
+        }
+        for (int i = 0; i < n; i++) {
+            sink += deque.removeLast();
+        }
+        return 4.0 * n * 1000 / (System.nanoTime() - start);
+    }
+
+    private static double throughputOfLinked(int n) {
+        long start = System.nanoTime();
+        LinkedDeque<Integer> deque = new LinkedDeque<>();
+        for (int i = 0; i < n; i++) {
+            deque.addLast(ITEM);
+        }
+        for (int i = 0; i < n; i++) {
+            sink += deque.removeFirst();
+        }
+        for (int i = 0; i < n; i++) {
+            deque.addFirst(ITEM);
+        }
+        for (int i = 0; i < n; i++) {
+            sink += deque.removeLast();
+        }
+        return 4.0 * n * 1000 / (System.nanoTime() - start);
+    }
+
+    private static double footprintOfArray(int n) {
+        long before = usedMemory();
+        Deque<Integer> deque = new Deque<>();
+        for (int i = 0; i < n; i++) {
+            deque.addLast(ITEM);
+        }
+        double bytes = (usedMemory() - before) * 1.0 / n;
+        sink += deque.size();
+        return bytes;
+    }
+
+    private static double footprintOfLinked(int n) {
+        long before = usedMemory();
+        LinkedDeque<Integer> deque = new LinkedDeque<>();
+        for (int i = 0; i < n; i++) {
+            deque.addLast(ITEM);
+        }
+        double bytes = (usedMemory() - before) * 1.0 / n;
+        sink += deque.size();
+        return bytes;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,238 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A double-ended queue of primitive {@code double} values. Same operations as
+ * {@link Deque}, backed by a circular {@code double} array, so that no value is
+ * boxed.
+ *
+ * @author Mincong Huang
+ */
+public class DoubleDeque {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private double[] array;
+    private int head;  // index of the first item
+    private int size;
+    private int modCount;
+
+    /**
+     * Construct an empty deque
+     */
+    public DoubleDeque() {
+        array = new double[MIN_CAPACITY];
+    }
+
+    /**
+     * Is the deque empty?
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items on the deque
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add the item to the front
+     */
+    public void addFirst(double item) {
+        if (size == array.length) {
+            resize(array.length * 2);
+        }
+        head = (head - 1) & (array.length - 1);
+        array[head] = item;
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Add the item to the end
+     */
+    public void addLast(double item) {
+        if (size == array.length) {
+            resize(array.length * 2);
+        }
+        array[(head + size) & (array.length - 1)] = item;
+        size++;
+        modCount++;
+    }
+
+    /**
+     * Remove and return the item from the front
+     */
+    public double removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException("Deque is empty.");
+        }
+        double item = array[head];
+        head = (head + 1) & (array.length - 1);
+        size--;
+        modCount++;
+        shrinkIfSparse();
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the end
+     */
+    public double removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException("Deque is empty.");
+        }
+        double item = array[(head + size - 1) & (array.length - 1)];
+        size--;
+        modCount++;
+        shrinkIfSparse();
+        return item;
+    }
+
+    // resize array if it is only 25% full
+    private void shrinkIfSparse() {
+        if (array.length > MIN_CAPACITY && size == array.length / 4) {
+            resize(array.length / 2);
+        }
+    }
+
+    private void resize(int newCapacity) {
+        double[] newArray = new double[newCapacity];
+        int firstPart = Math.min(size, array.length - head);
+        System.arraycopy(array, head, newArray, 0, firstPart);
+        System.arraycopy(array, 0, newArray, firstPart, size - firstPart);
+        array = newArray;
+        head = 0;
+    }
+
+    /**
+     * Return a fail-fast iterator over items in order from front to end
+     */
+    public PrimitiveIterator.OfDouble iterator() {
+        return new HeadFirstIterator();
+    }
+
+    /**
+     * Perform the action on each item, in order from front to end
+     *
+     * @throws ConcurrentModificationException if the action modifies the
+     *         deque
+     */
+    public void forEach(DoubleConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("action is null.");
+        }
+        int expectedModCount = modCount;
+        int mask = array.length - 1;
+        for (int i = 0; i < size && modCount == expectedModCount; i++) {
+            action.accept(array[(head + i) & mask]);
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    private class HeadFirstIterator implements PrimitiveIterator.OfDouble {
+
+        private final int expectedModCount = modCount;
+        private int i;
+
+        @Override
+        public boolean hasNext() {
+            return i < size;
+        }
+
+        @Override
+        public double nextDouble() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more item.");
+            }
+            return array[(head + i++) & (array.length - 1)];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove unsupported.");
+        }
+    }
+
+    /**
+     * Serialization of the queue.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(array[(head + i) & (array.length - 1)]);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Unit testing.
+     */
+    public static void main(String[] args) {
+
+        StdOut.println("Tests start.");
+
+        // Test 1: public operations
+        DoubleDeque d1 = new DoubleDeque();
+        StdOut.println("Test 1A passed? " + d1.isEmpty());
+        d1.addLast(1);
+        d1.addLast(2);
+        d1.addFirst(0);
+        StdOut.println("Test 1B passed? " + (d1.size() == 3));
+        StdOut.println("Test 1C passed? " + (d1.iterator().nextDouble() == 0));
+        StdOut.println("Test 1D passed? " + (d1.removeLast() == 2));
+        StdOut.println("Test 1E passed? " + (d1.removeFirst() == 0));
+        StdOut.println("Test 1F passed? " + (d1.removeFirst() == 1));
+        StdOut.println("Test 1G passed? " + d1.isEmpty());
+
+        // Test 2: exceptions
+        DoubleDeque d2 = new DoubleDeque();
+        try {
+            d2.removeFirst();
+            StdOut.println("Test 2A passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2A passed? " + result);
+        }
+        try {
+            d2.addLast(1);
+            d2.forEach(item -> d2.addLast(item));
+            StdOut.println("Test 2B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof ConcurrentModificationException;
+            StdOut.println("Test 2B passed? " + result);
+        }
+
+        // Test 3: wrap-around, resizing and forEach
+        DoubleDeque d3 = new DoubleDeque();
+        for (int i = 1; i <= 20; i++) {
+            d3.addFirst(-i);
+            d3.addLast(i);
+        }
+        double[] sum = new double[1];
+        d3.forEach(item -> sum[0] += item * item);
+        StdOut.println("Test 3A passed? " + (sum[0] == 5740));
+        for (int i = 0; i < 38; i++) {
+            d3.removeLast();
+        }
+        StdOut.println("Test 3B passed? "
+                + (d3.removeFirst() == -20 && d3.removeFirst() == -19));
+
+        StdOut.println("Tests finished.");
+    }
+}
@@ -0,0 +1,204 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.DoubleConsumer;
+
+/**
+ * A randomized queue of primitive {@code double} values. Same operations as
+ * {@link RandomizedQueue}, backed by a {@code double} array, so that no value is
+ * boxed.
+ *
+ * @author Mincong Huang
+ */
+public class DoubleRandomizedQueue {
+
+    private double[] array;
+    private int size;
+
+    /**
+     * Construct an empty randomized queue
+     */
+    public DoubleRandomizedQueue() {
+        array = new double[1];
+    }
+
+    /**
+     * Is the queue empty?
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items on the queue
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add the item
+     */
+    public void enqueue(double item) {
+        // array is full
+        if (size == array.length) {
+            resize(array.length * 2);
+        }
+        array[size++] = item;
+    }
+
+    /**
+     * Remove and return a random item
+     */
+    public double dequeue() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("RandomizedQueue is empty.");
+        }
+        int i = StdRandom.uniform(size);
+        double removed = array[i];
+        array[i] = array[--size];
+        // resize array if it is only 25% full
+        if (size > 0 && size == array.length / 4) {
+            resize(array.length / 2);
+        }
+        return removed;
+    }
+
+    /**
+     * Return (but do not remove) a random item
+     */
+    public double sample() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("RandomizedQueue is empty.");
+        }
+        return array[StdRandom.uniform(size)];
+    }
+
+    private void resize(int newCapacity) {
+        double[] newArray = new double[newCapacity];
+        System.arraycopy(array, 0, newArray, 0, size);
+        array = newArray;
+    }
+
+    /**
+     * Return an independent iterator over items in random order
+     */
+    public PrimitiveIterator.OfDouble iterator() {
+        return new RandomizedIterator();
+    }
+
+    /**
+     * Perform the action on each item, in random order
+     */
+    public void forEach(DoubleConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("action is null.");
+        }
+        PrimitiveIterator.OfDouble iterator = iterator();
+        while (iterator.hasNext()) {
+            action.accept(iterator.nextDouble());
+        }
+    }
+
+    private class RandomizedIterator implements PrimitiveIterator.OfDouble {
+
+        private final double[] copiedArray;
+        private int copiedSize;
+
+        RandomizedIterator() {
+            copiedArray = new double[size];
+            System.arraycopy(array, 0, copiedArray, 0, size);
+            copiedSize = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return copiedSize > 0;
+        }
+
+        @Override
+        public double nextDouble() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more item.");
+            }
+            int i = StdRandom.uniform(copiedSize);
+            double item = copiedArray[i];
+            copiedArray[i] = copiedArray[--copiedSize];
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove unsupported.");
+        }
+    }
+
+    /**
+     * Serialization of the queue.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(array[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Unit testing.
+     */
+    public static void main(String[] args) {
+
+        StdOut.println("Tests start.");
+
+        // Test 1: public operations
+        DoubleRandomizedQueue q1 = new DoubleRandomizedQueue();
+        StdOut.println("Test 1A passed? " + q1.isEmpty());
+        for (int i = 1; i <= 4; i++) {
+            q1.enqueue(i);
+        }
+        StdOut.println("Test 1B passed? " + (q1.size() == 4));
+        double test1C = q1.sample();
+        StdOut.println("Test 1C passed? " + (test1C >= 1 && test1C <= 4));
+        double[] sum = new double[1];
+        q1.forEach(item -> sum[0] += item);
+        StdOut.println("Test 1D passed? " + (sum[0] == 10));
+        double test1E = 0;
+        while (!q1.isEmpty()) {
+            test1E += q1.dequeue();
+        }
+        StdOut.println("Test 1E passed? " + (test1E == 10));
+        StdOut.println("Test 1F passed? " + !q1.iterator().hasNext());
+
+        // Test 2: exceptions
+        DoubleRandomizedQueue q2 = new DoubleRandomizedQueue();
+        try {
+            q2.dequeue();
+            StdOut.println("Test 2A passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2A passed? " + result);
+        }
+        try {
+            q2.sample();
+            StdOut.println("Test 2B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2B passed? " + result);
+        }
+        try {
+            q2.iterator().nextDouble();
+            StdOut.println("Test 2C passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2C passed? " + result);
+        }
+
+        StdOut.println("Tests finished.");
+    }
+}
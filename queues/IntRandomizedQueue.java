@@ -0,0 +1,204 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A randomized queue of primitive {@code int} values. Same operations as
+ * {@link RandomizedQueue}, backed by a {@code int} array, so that no value is
+ * boxed.
+ *
+ * @author Mincong Huang
+ */
+public class IntRandomizedQueue {
+
+    private int[] array;
+    private int size;
+
+    /**
+     * Construct an empty randomized queue
+     */
+    public IntRandomizedQueue() {
+        array = new int[1];
+    }
+
+    /**
+     * Is the queue empty?
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items on the queue
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add the item
+     */
+    public void enqueue(int item) {
+        // array is full
+        if (size == array.length) {
+            resize(array.length * 2);
+        }
+        array[size++] = item;
+    }
+
+    /**
+     * Remove and return a random item
+     */
+    public int dequeue() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("RandomizedQueue is empty.");
+        }
+        int i = StdRandom.uniform(size);
+        int removed = array[i];
+        array[i] = array[--size];
+        // resize array if it is only 25% full
+        if (size > 0 && size == array.length / 4) {
+            resize(array.length / 2);
+        }
+        return removed;
+    }
+
+    /**
+     * Return (but do not remove) a random item
+     */
+    public int sample() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("RandomizedQueue is empty.");
+        }
+        return array[StdRandom.uniform(size)];
+    }
+
+    private void resize(int newCapacity) {
+        int[] newArray = new int[newCapacity];
+        System.arraycopy(array, 0, newArray, 0, size);
+        array = newArray;
+    }
+
+    /**
+     * Return an independent iterator over items in random order
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new RandomizedIterator();
+    }
+
+    /**
+     * Perform the action on each item, in random order
+     */
+    public void forEach(IntConsumer action) {
+        if (action == null) {
+            throw new NullPointerException("action is null.");
+        }
+        PrimitiveIterator.OfInt iterator = iterator();
+        while (iterator.hasNext()) {
+            action.accept(iterator.nextInt());
+        }
+    }
+
+    private class RandomizedIterator implements PrimitiveIterator.OfInt {
+
+        private final int[] copiedArray;
+        private int copiedSize;
+
+        RandomizedIterator() {
+            copiedArray = new int[size];
+            System.arraycopy(array, 0, copiedArray, 0, size);
+            copiedSize = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return copiedSize > 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more item.");
+            }
+            int i = StdRandom.uniform(copiedSize);
+            int item = copiedArray[i];
+            copiedArray[i] = copiedArray[--copiedSize];
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove unsupported.");
+        }
+    }
+
+    /**
+     * Serialization of the queue.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(array[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Unit testing.
+     */
+    public static void main(String[] args) {
+
+        StdOut.println("Tests start.");
+
+        // Test 1: public operations
+        IntRandomizedQueue q1 = new IntRandomizedQueue();
+        StdOut.println("Test 1A passed? " + q1.isEmpty());
+        for (int i = 1; i <= 4; i++) {
+            q1.enqueue(i);
+        }
+        StdOut.println("Test 1B passed? " + (q1.size() == 4));
+        int test1C = q1.sample();
+        StdOut.println("Test 1C passed? " + (test1C >= 1 && test1C <= 4));
+        int[] sum = new int[1];
+        q1.forEach(item -> sum[0] += item);
+        StdOut.println("Test 1D passed? " + (sum[0] == 10));
+        int test1E = 0;
+        while (!q1.isEmpty()) {
+            test1E += q1.dequeue();
+        }
+        StdOut.println("Test 1E passed? " + (test1E == 10));
+        StdOut.println("Test 1F passed? " + !q1.iterator().hasNext());
+
+        // Test 2: exceptions
+        IntRandomizedQueue q2 = new IntRandomizedQueue();
+        try {
+            q2.dequeue();
+            StdOut.println("Test 2A passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2A passed? " + result);
+        }
+        try {
+            q2.sample();
+            StdOut.println("Test 2B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2B passed? " + result);
+        }
+        try {
+            q2.iterator().nextInt();
+            StdOut.println("Test 2C passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2C passed? " + result);
+        }
+
+        StdOut.println("Tests finished.");
+    }
+}
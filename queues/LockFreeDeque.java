@@ -0,0 +1,563 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free multi-producer, multi-consumer deque. Any number of threads may
+ * add and remove items at both ends.
+ * <p>
+ * The deque is an immutable snapshot made of two linked stacks: the front
+ * stack holds the first items, the back stack holds the last items in reverse
+ * order. Every operation builds a new snapshot sharing most nodes with the
+ * current one, and publishes it with a single compare-and-set, retrying if
+ * another thread was faster. Hence every operation is linearizable, and so
+ * are {@link #size()} and {@link #iterator()}, which read one snapshot.
+ * <p>
+ * When one stack is empty and an item is removed from its end, half of the
+ * other stack is moved to it, so that alternating removals at both ends stay
+ * constant amortized time. This refill is published by its own
+ * compare-and-set before the item is removed. If another thread changed the
+ * snapshot in the meantime, the refill is rebased on the new snapshot in
+ * time proportional to the number of changes, instead of being copied again.
+ * <p>
+ * When the compare-and-set fails, an add and a removal at the same end may
+ * meet in an elimination array instead of retrying on the snapshot: the
+ * removal takes the item of the add, as if the add came right before it.
+ * Pairs of opposite operations thus leave the contended snapshot alone.
+ *
+ * @author Mincong Huang
+ */
+public class LockFreeDeque<Item> implements Iterable<Item> {
+
+    private static final class Node<Item> {
+
+        final Item item;
+        final Node<Item> next;
+        final int size;  // number of nodes from this one to the bottom
+
+        Node(Item item, Node<Item> next) {
+            this.item = item;
+            this.next = next;
+            this.size = sizeOf(next) + 1;
+        }
+    }
+
+    private static int sizeOf(Node<?> top) {
+        return top == null ? 0 : top.size;
+    }
+
+    private static final class Snapshot<Item> {
+
+        final Node<Item> front;  // first item on top
+        final Node<Item> back;   // last item on top
+
+        Snapshot(Node<Item> front, Node<Item> back) {
+            this.front = front;
+            this.back = back;
+        }
+
+        int size() {
+            return sizeOf(front) + sizeOf(back);
+        }
+    }
+
+    /**
+     * The older half of a source stack moved to an empty target stack, in
+     * reverse order, and the newer half left in a copy of the source.
+     */
+    private static final class Refill<Item> {
+
+        final Node<Item> source;  // stack the refill was computed from
+        final Node<Item> target;
+        final Node<Item> rest;
+
+        private Refill(Node<Item> source, Node<Item> target, Node<Item> rest) {
+            this.source = source;
+            this.target = target;
+            this.rest = rest;
+        }
+
+        /**
+         * Refill of the source stack, rebased from the previous refill if
+         * possible.
+         */
+        static <Item> Refill<Item> of(Node<Item> source,
+                Refill<Item> previous) {
+            if (previous != null) {
+                Refill<Item> rebased = previous.rebase(source);
+                if (rebased != null) {
+                    return rebased;
+                }
+            }
+            Node<Item>[] items = toArray(source);
+            // items[0] is the newest item, items[n - 1] the oldest one
+            int n = items.length;
+            int half = (n + 1) / 2;
+            Node<Item> target = null;
+            for (int i = n - half; i < n; i++) {
+                target = new Node<>(items[i].item, target);
+            }
+            return new Refill<>(source, target,
+                    push(items, n - half, null));
+        }
+
+        /**
+         * Same refill for a new source stack, which differs from the old one
+         * by j pops and then k pushes, in O(j + k) time; or null if the pops
+         * reached the older half, which is then no longer there.
+         */
+        private Refill<Item> rebase(Node<Item> newSource) {
+            // the deepest nodes are shared, find the first common one
+            Node<Item> a = source;
+            Node<Item> b = newSource;
+            while (a != b) {
+                int sizeA = sizeOf(a);
+                int sizeB = sizeOf(b);
+                if (sizeA >= sizeB) {
+                    a = a.next;
+                }
+                if (sizeB >= sizeA) {
+                    b = b.next;
+                }
+            }
+            int common = sizeOf(a);
+            int popped = sizeOf(source) - common;
+            if (common < sizeOf(source) - sizeOf(rest)) {
+                return null;
+            }
+            Node<Item> newRest = rest;
+            for (int i = 0; i < popped; i++) {
+                newRest = newRest.next;
+            }
+            Node<Item>[] pushed = toArray(newSource,
+                    sizeOf(newSource) - common);
+            return new Refill<>(newSource, target,
+                    push(pushed, pushed.length, newRest));
+        }
+
+        /**
+         * Copies of the first n nodes pushed onto the stack, the last one
+         * first, so that nodes[0] ends on top.
+         */
+        private static <Item> Node<Item> push(Node<Item>[] nodes, int n,
+                Node<Item> top) {
+            for (int i = n - 1; i >= 0; i--) {
+                top = new Node<>(nodes[i].item, top);
+            }
+            return top;
+        }
+    }
+
+    private static <Item> Node<Item>[] toArray(Node<Item> top) {
+        return toArray(top, sizeOf(top));
+    }
+
+    private static <Item> Node<Item>[] toArray(Node<Item> top, int n) {
+        @SuppressWarnings("unchecked")
+        Node<Item>[] nodes = (Node<Item>[]) new Node<?>[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = top;
+            top = top.next;
+        }
+        return nodes;
+    }
+
+    /**
+     * Slots where an add waits for a removal at the same end. Each offer is
+     * a new node, so a slot never holds the same offer twice.
+     */
+    private static final class EliminationArray<Item> {
+
+        private static final int SPINS = 128;
+
+        private final AtomicReferenceArray<Node<Item>> slots =
+                new AtomicReferenceArray<>(Math.min(8,
+                        Runtime.getRuntime().availableProcessors()));
+
+        /**
+         * Offers the item for a while: returns true if a removal took it.
+         */
+        boolean offer(Item item) {
+            int i = ThreadLocalRandom.current().nextInt(slots.length());
+            Node<Item> offer = new Node<>(item, null);
+            if (!slots.compareAndSet(i, null, offer)) {
+                return false;
+            }
+            for (int spin = 0; spin < SPINS; spin++) {
+                if (slots.get(i) != offer) {
+                    return true;
+                }
+            }
+            // withdraw the offer, unless a removal took it meanwhile
+            return !slots.compareAndSet(i, offer, null);
+        }
+
+        /**
+         * Takes an offered item, or returns null if none is found.
+         */
+        Item poll() {
+            int i = ThreadLocalRandom.current().nextInt(slots.length());
+            Node<Item> offer = slots.get(i);
+            if (offer != null && slots.compareAndSet(i, offer, null)) {
+                return offer.item;
+            }
+            return null;
+        }
+    }
+
+    private final AtomicReference<Snapshot<Item>> snapshot =
+            new AtomicReference<>(new Snapshot<>(null, null));
+
+    private final EliminationArray<Item> frontOffers =
+            new EliminationArray<>();
+
+    private final EliminationArray<Item> backOffers =
+            new EliminationArray<>();
+
+    /**
+     * Is the deque empty?
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Return the number of items on the deque, at the instant of the call
+     */
+    public int size() {
+        return snapshot.get().size();
+    }
+
+    /**
+     * Add the item to the front
+     */
+    public void addFirst(Item item) {
+        if (item == null) {
+            throw new NullPointerException("Element e cannot be null.");
+        }
+        while (true) {
+            Snapshot<Item> s = snapshot.get();
+            Snapshot<Item> next = new Snapshot<>(new Node<>(item, s.front),
+                    s.back);
+            if (snapshot.compareAndSet(s, next) || frontOffers.offer(item)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add the item to the end
+     */
+    public void addLast(Item item) {
+        if (item == null) {
+            throw new NullPointerException("Element e cannot be null.");
+        }
+        while (true) {
+            Snapshot<Item> s = snapshot.get();
+            Snapshot<Item> next = new Snapshot<>(s.front,
+                    new Node<>(item, s.back));
+            if (snapshot.compareAndSet(s, next) || backOffers.offer(item)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove and return the item from the front, or null if the deque is
+     * empty
+     */
+    public Item pollFirst() {
+        Refill<Item> refill = null;
+        while (true) {
+            Snapshot<Item> s = snapshot.get();
+            if (s.size() == 0) {
+                return null;
+            }
+            if (s.front == null) {
+                refill = Refill.of(s.back, refill);
+                Snapshot<Item> refilled = new Snapshot<>(refill.target,
+                        refill.rest);
+                if (!snapshot.compareAndSet(s, refilled)) {
+                    continue;
+                }
+                s = refilled;
+            }
+            if (snapshot.compareAndSet(s,
+                    new Snapshot<>(s.front.next, s.back))) {
+                return s.front.item;
+            }
+            Item item = frontOffers.poll();
+            if (item != null) {
+                return item;
+            }
+        }
+    }
+
+    /**
+     * Remove and return the item from the end, or null if the deque is empty
+     */
+    public Item pollLast() {
+        Refill<Item> refill = null;
+        while (true) {
+            Snapshot<Item> s = snapshot.get();
+            if (s.size() == 0) {
+                return null;
+            }
+            if (s.back == null) {
+                refill = Refill.of(s.front, refill);
+                Snapshot<Item> refilled = new Snapshot<>(refill.rest,
+                        refill.target);
+                if (!snapshot.compareAndSet(s, refilled)) {
+                    continue;
+                }
+                s = refilled;
+            }
+            if (snapshot.compareAndSet(s,
+                    new Snapshot<>(s.front, s.back.next))) {
+                return s.back.item;
+            }
+            Item item = backOffers.poll();
+            if (item != null) {
+                return item;
+            }
+        }
+    }
+
+    /**
+     * Remove and return the item from the front
+     */
+    public Item removeFirst() {
+        Item item = pollFirst();
+        if (item == null) {
+            throw new NoSuchElementException("Deque is empty.");
+        }
+        return item;
+    }
+
+    /**
+     * Remove and return the item from the end
+     */
+    public Item removeLast() {
+        Item item = pollLast();
+        if (item == null) {
+            throw new NoSuchElementException("Deque is empty.");
+        }
+        return item;
+    }
+
+    /**
+     * Return an iterator over the items of the deque at the instant of the
+     * call, in order from front to end. Later modifications are not visible.
+     */
+    @Override
+    public Iterator<Item> iterator() {
+        return new SnapshotIterator(snapshot.get());
+    }
+
+    private class SnapshotIterator implements Iterator<Item> {
+
+        private Node<Item> front;
+        private final Node<Item>[] back;  // last item first
+        private int backIndex;
+
+        SnapshotIterator(Snapshot<Item> s) {
+            front = s.front;
+            back = toArray(s.back);
+            backIndex = back.length - 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return front != null || backIndex >= 0;
+        }
+
+        @Override
+        public Item next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more item.");
+            }
+            if (front != null) {
+                Item item = front.item;
+                front = front.next;
+                return item;
+            }
+            return back[backIndex--].item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Remove unsupported.");
+        }
+    }
+
+    /**
+     * Serialization of the queue.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (Item item : this) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(item);
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Unit testing, then stress tests: producers add distinct items at random
+     * ends while consumers remove items from random ends, and then producers
+     * add at the back while consumers remove from the front. Every item must
+     * be removed exactly once.
+     * <p>
+     * Usage: {@code LockFreeDeque [items [producers [consumers]]]}
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int producerCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int consumerCount = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        StdOut.println("Tests start.");
+
+        // Test 1: public operations
+        LockFreeDeque<Integer> d1 = new LockFreeDeque<>();
+        StdOut.println("Test 1A passed? " + d1.isEmpty());
+        d1.addLast(1);
+        d1.addLast(2);
+        d1.addFirst(0);
+        StdOut.println("Test 1B passed? " + d1.toString().equals("[0,1,2]"));
+        StdOut.println("Test 1C passed? " + (d1.size() == 3));
+        StdOut.println("Test 1D passed? " + (d1.removeFirst() == 0));
+        StdOut.println("Test 1E passed? " + (d1.removeFirst() == 1));
+        StdOut.println("Test 1F passed? " + (d1.removeFirst() == 2));
+        StdOut.println("Test 1G passed? " + (d1.pollLast() == null));
+        for (int i = 0; i < 10; i++) {
+            d1.addLast(i);
+        }
+        StdOut.println("Test 1H passed? " + (d1.removeLast() == 9
+                && d1.removeFirst() == 0 && d1.removeLast() == 8));
+
+        // Test 2: exceptions
+        LockFreeDeque<Integer> d2 = new LockFreeDeque<>();
+        try {
+            d2.removeFirst();
+            StdOut.println("Test 2A passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2A passed? " + result);
+        }
+        try {
+            d2.addLast(null);
+            StdOut.println("Test 2B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NullPointerException;
+            StdOut.println("Test 2B passed? " + result);
+        }
+
+        // Test 3: stress
+        LockFreeDeque<Integer> d3 = new LockFreeDeque<>();
+        AtomicIntegerArray taken = new AtomicIntegerArray(n);
+        AtomicLong takenCount = new AtomicLong();
+        boolean[] sizeInRange = {true};
+        Thread[] threads = new Thread[producerCount + consumerCount];
+        for (int p = 0; p < producerCount; p++) {
+            int first = p;
+            threads[p] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = first; i < n; i += producerCount) {
+                    if (random.nextBoolean()) {
+                        d3.addFirst(i);
+                    } else {
+                        d3.addLast(i);
+                    }
+                }
+            });
+        }
+        for (int c = 0; c < consumerCount; c++) {
+            threads[producerCount + c] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (takenCount.get() < n) {
+                    Integer item = random.nextBoolean()
+                            ? d3.pollFirst() : d3.pollLast();
+                    if (item != null) {
+                        taken.incrementAndGet(item);
+                        takenCount.incrementAndGet();
+                    }
+                    int size = d3.size();
+                    if (size < 0 || size > n) {
+                        sizeInRange[0] = false;
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        boolean exactlyOnce = true;
+        for (int i = 0; i < n; i++) {
+            exactlyOnce &= taken.get(i) == 1;
+        }
+        StdOut.println("Test 3A passed? " + exactlyOnce);
+        StdOut.println("Test 3B passed? " + d3.isEmpty());
+        StdOut.println("Test 3C passed? " + sizeInRange[0]);
+
+        // Test 4: stress as a queue, where every removal at the front
+        // refills it from the back while producers add at the back. Each
+        // consumer must see the items of each producer in order.
+        LockFreeDeque<Integer> d4 = new LockFreeDeque<>();
+        AtomicIntegerArray taken4 = new AtomicIntegerArray(n);
+        AtomicLong takenCount4 = new AtomicLong();
+        boolean[] inOrder = {true};
+        for (int p = 0; p < producerCount; p++) {
+            int first = p;
+            threads[p] = new Thread(() -> {
+                for (int i = first; i < n; i += producerCount) {
+                    d4.addLast(i);
+                }
+            });
+        }
+        for (int c = 0; c < consumerCount; c++) {
+            threads[producerCount + c] = new Thread(() -> {
+                int[] last = new int[producerCount];
+                Arrays.fill(last, -1);
+                while (takenCount4.get() < n) {
+                    Integer item = d4.pollFirst();
+                    if (item != null) {
+                        taken4.incrementAndGet(item);
+                        takenCount4.incrementAndGet();
+                        if (item <= last[item % producerCount]) {
+                            inOrder[0] = false;
+                        }
+                        last[item % producerCount] = item;
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        exactlyOnce = true;
+        for (int i = 0; i < n; i++) {
+            exactlyOnce &= taken4.get(i) == 1;
+        }
+        StdOut.println("Test 4A passed? " + exactlyOnce);
+        StdOut.println("Test 4B passed? " + inOrder[0]);
+        StdOut.println("Test 4C passed? " + d4.isEmpty());
+
+        StdOut.println("Tests finished.");
+    }
+}
@@ -0,0 +1,659 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * A double-ended queue stored in fixed-size segment files of a directory, so
+ * that its depth is bounded by the disk instead of the heap. Only the head
+ * and the tail segments are memory-mapped; the segments in the middle are
+ * left to the page cache.
+ * <p>
+ * Segments have consecutive positions from head to tail. A segment starts
+ * with a header holding the range of its used bytes and its position. Each
+ * item is serialized between two copies of its length, so that records can
+ * be read from both ends. Items are added to the tail segment forwards and
+ * to the head segment backwards.
+ * <p>
+ * A mapped file can neither be deleted on every platform nor unmapped
+ * portably, so a segment which becomes empty is not deleted: its file is
+ * marked free and reused for the next new segment. The files thus take as
+ * much disk as the deepest the deque has been since it was opened; opening
+ * the directory deletes the free files beyond {@link #SPARE_SEGMENTS}.
+ * <p>
+ * The range is the only state of a segment besides its records: the number
+ * of items is derived by walking the records when the deque is opened. The
+ * range is updated by a single write after the record is written, and an
+ * empty range is reset so that it reads as empty at every step, so the
+ * segment files are always consistent: a deque opened on the directory of a
+ * deque which was not closed, e.g. because the process was killed, contains
+ * every item added before. Call {@link #flush()} to force the head and the
+ * tail to the storage device.
+ *
+ * @author Mincong Huang
+ */
+public class MappedDeque<Item> implements Closeable {
+
+    /**
+     * Converts items to bytes and back.
+     */
+    public interface Serializer<Item> {
+
+        byte[] toBytes(Item item);
+
+        Item fromBytes(byte[] bytes);
+    }
+
+    /**
+     * Serializer of strings, in UTF-8.
+     */
+    public static final Serializer<String> STRINGS = new Serializer<String>() {
+
+        @Override
+        public byte[] toBytes(String item) {
+            return item.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String fromBytes(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    public static final int DEFAULT_SEGMENT_BYTES = 1 << 24;
+
+    /**
+     * Number of free segment files kept when the deque is opened.
+     */
+    public static final int SPARE_SEGMENTS = 2;
+
+    private static final int MAGIC = 0x4d445132;  // "MDQ2"
+    private static final int HEADER_BYTES = 24;   // see below
+    private static final int START = 4;           // 0 if the segment is free
+    private static final int END = 8;             // empty if not after start
+    private static final int POSITION = 16;       // 12 to 15 are unused
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".dat";
+
+    private final Path directory;
+    private final Serializer<Item> serializer;
+    private final int segmentBytes;
+    private final ArrayDeque<Integer> files = new ArrayDeque<>();  // in use
+    private final ArrayDeque<Integer> freeFiles = new ArrayDeque<>();
+    private int nextFile;  // number of the next file to create
+    private long headPosition;
+    private long tailPosition;
+    private MappedByteBuffer head;
+    private MappedByteBuffer tail;  // same buffer as head if one segment
+    private long size;
+    private boolean closed;
+
+    /**
+     * Open the deque stored in the directory, or create an empty one, with
+     * segments of {@link #DEFAULT_SEGMENT_BYTES} bytes
+     */
+    public MappedDeque(Path directory, Serializer<Item> serializer)
+            throws IOException {
+        this(directory, serializer, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Open the deque stored in the directory, or create an empty one, with
+     * segments of the given size. The size must be the same as the one the
+     * deque was created with.
+     */
+    public MappedDeque(Path directory, Serializer<Item> serializer,
+            int segmentBytes) throws IOException {
+        if (directory == null || serializer == null) {
+            throw new NullPointerException("Arguments cannot be null.");
+        }
+        if (segmentBytes <= HEADER_BYTES + 8) {
+            throw new IllegalArgumentException(
+                    "Segments are too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.serializer = serializer;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * Read the segment headers, check that the positions are consecutive,
+     * count the items, and map the head and the tail. The segments are read
+     * without mapping them.
+     */
+    private void recover() throws IOException {
+        TreeMap<Long, Integer> fileAt = new TreeMap<>();
+        TreeMap<Long, Integer> countAt = new TreeMap<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                int file = numberOf(path);
+                nextFile = Math.max(nextFile, file + 1);
+                header.clear();
+                try (FileChannel channel = FileChannel.open(path,
+                        StandardOpenOption.READ)) {
+                    int read = channel.read(header, 0);
+                    int magic = header.getInt(0);
+                    long position = header.getLong(POSITION);
+                    if (read < HEADER_BYTES || magic == 0
+                            || header.getInt(START) == 0) {
+                        // created but not initialized yet, or free
+                        freeFiles.add(file);
+                    } else if (magic != MAGIC) {
+                        throw new IOException("Not a segment: " + path);
+                    } else if (fileAt.put(position, file) != null) {
+                        throw new IOException(
+                                "Duplicate segments in " + directory);
+                    } else {
+                        countAt.put(position, countRecords(channel,
+                                header.getInt(START), header.getInt(END),
+                                path));
+                    }
+                }
+            }
+        }
+        if (!fileAt.isEmpty()
+                && fileAt.lastKey() - fileAt.firstKey() + 1 != fileAt.size()) {
+            throw new IOException("Missing segments in " + directory);
+        }
+        // a segment created just before the process died may be empty
+        while (fileAt.size() > 1 && countAt.firstEntry().getValue() == 0) {
+            free(fileAt.pollFirstEntry().getValue());
+            countAt.pollFirstEntry();
+        }
+        while (fileAt.size() > 1 && countAt.lastEntry().getValue() == 0) {
+            free(fileAt.pollLastEntry().getValue());
+            countAt.pollLastEntry();
+        }
+        while (freeFiles.size() > SPARE_SEGMENTS) {
+            try {
+                Files.delete(fileOf(freeFiles.peekLast()));
+            } catch (IOException e) {
+                // still mapped by another deque on some platforms: keep it
+                break;
+            }
+            freeFiles.pollLast();
+        }
+        if (fileAt.isEmpty()) {
+            headPosition = 0;
+            tailPosition = 0;
+            head = create(0, HEADER_BYTES);
+            tail = head;
+            files.add(freeFiles.pollFirst());
+            return;
+        }
+        for (int count : countAt.values()) {
+            size += count;
+        }
+        files.addAll(fileAt.values());
+        headPosition = fileAt.firstKey();
+        tailPosition = fileAt.lastKey();
+        head = map(files.peekFirst());
+        tail = headPosition == tailPosition ? head : map(files.peekLast());
+    }
+
+    /**
+     * Count the records of the range [start, end) of a segment, checking
+     * that they fill it exactly.
+     */
+    private int countRecords(FileChannel channel, int start, int end,
+            Path path) throws IOException {
+        if (start >= end) {
+            return 0;
+        }
+        if (start < HEADER_BYTES || end > segmentBytes) {
+            throw new IOException("Corrupt segment: " + path);
+        }
+        ByteBuffer records = ByteBuffer.allocate(end - start);
+        while (records.hasRemaining()) {
+            if (channel.read(records, start + records.position()) < 0) {
+                throw new IOException("Truncated segment: " + path);
+            }
+        }
+        int count = 0;
+        for (int offset = 0; offset < records.limit(); count++) {
+            int length = records.getInt(offset);
+            if (length < 0 || length > records.limit() - offset - 8
+                    || records.getInt(offset + 4 + length) != length) {
+                throw new IOException("Corrupt segment: " + path);
+            }
+            offset += length + 8;
+        }
+        return count;
+    }
+
+    /**
+     * Is the deque empty?
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items on the deque
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Add the item to the front
+     */
+    public void addFirst(Item item) {
+        byte[] bytes = toBytes(item);
+        int recordBytes = bytes.length + 8;
+        if (size == 0) {
+            // the only segment: fill it backwards from its end
+            setEmptyRange(head, segmentBytes);
+        }
+        int start = head.getInt(START);
+        if (start - recordBytes < HEADER_BYTES) {
+            head = create(headPosition - 1, segmentBytes);
+            headPosition--;
+            files.addFirst(freeFiles.pollFirst());
+            start = segmentBytes;
+        }
+        start -= recordBytes;
+        writeRecord(head, start, bytes);
+        head.putInt(START, start);
+        size++;
+    }
+
+    /**
+     * Add the item to the end
+     */
+    public void addLast(Item item) {
+        byte[] bytes = toBytes(item);
+        int recordBytes = bytes.length + 8;
+        if (size == 0) {
+            // the only segment: fill it forwards from its header
+            setEmptyRange(tail, HEADER_BYTES);
+        }
+        int end = tail.getInt(END);
+        if (end + recordBytes > segmentBytes) {
+            tail = create(tailPosition + 1, HEADER_BYTES);
+            tailPosition++;
+            files.addLast(freeFiles.pollFirst());
+            end = HEADER_BYTES;
+        }
+        writeRecord(tail, end, bytes);
+        tail.putInt(END, end + recordBytes);
+        size++;
+    }
+
+    /**
+     * Remove and return the item from the front
+     */
+    public Item removeFirst() {
+        checkNotEmpty();
+        int start = head.getInt(START);
+        byte[] bytes = readRecord(head, start, head.getInt(start));
+        head.putInt(START, start + bytes.length + 8);
+        size--;
+        if (isEmptySegment(head) && headPosition != tailPosition) {
+            setFree(head);
+            freeFiles.add(files.pollFirst());
+            headPosition++;
+            head = headPosition == tailPosition ? tail : map(files.peekFirst());
+        }
+        return serializer.fromBytes(bytes);
+    }
+
+    /**
+     * Remove and return the item from the end
+     */
+    public Item removeLast() {
+        checkNotEmpty();
+        int end = tail.getInt(END);
+        int length = tail.getInt(end - 4);
+        int start = end - length - 8;
+        byte[] bytes = readRecord(tail, start, length);
+        tail.putInt(END, start);
+        size--;
+        if (isEmptySegment(tail) && headPosition != tailPosition) {
+            setFree(tail);
+            freeFiles.add(files.pollLast());
+            tailPosition--;
+            tail = headPosition == tailPosition ? head : map(files.peekLast());
+        }
+        return serializer.fromBytes(bytes);
+    }
+
+    /**
+     * Force the head and the tail segments to the storage device
+     */
+    public void flush() {
+        checkOpen();
+        head.force();
+        tail.force();
+    }
+
+    /**
+     * Flush the deque and drop its mapped buffers, which are unmapped once
+     * garbage collected. The deque cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush();
+        head = null;
+        tail = null;
+        closed = true;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Deque is closed.");
+        }
+    }
+
+    private void checkNotEmpty() {
+        checkOpen();
+        if (size == 0) {
+            throw new NoSuchElementException("Deque is empty.");
+        }
+    }
+
+    private byte[] toBytes(Item item) {
+        checkOpen();
+        if (item == null) {
+            throw new NullPointerException("Element e cannot be null.");
+        }
+        byte[] bytes = serializer.toBytes(item);
+        if (bytes.length > segmentBytes - HEADER_BYTES - 8) {
+            throw new IllegalArgumentException(
+                    "Item of " + bytes.length + " bytes exceeds a segment.");
+        }
+        return bytes;
+    }
+
+    private static void writeRecord(MappedByteBuffer segment, int offset,
+            byte[] bytes) {
+        segment.putInt(offset, bytes.length);
+        ByteBuffer buffer = segment.duplicate();
+        buffer.position(offset + 4);
+        buffer.put(bytes);
+        segment.putInt(offset + 4 + bytes.length, bytes.length);
+    }
+
+    private static byte[] readRecord(MappedByteBuffer segment, int offset,
+            int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = segment.duplicate();
+        buffer.position(offset + 4);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static boolean isEmptySegment(MappedByteBuffer segment) {
+        return segment.getInt(START) >= segment.getInt(END);
+    }
+
+    /**
+     * Set the range of an empty segment to [offset, offset). The bound
+     * moving away from the other one is written first, so that the range is
+     * empty after each write.
+     */
+    private static void setEmptyRange(MappedByteBuffer segment, int offset) {
+        if (offset > segment.getInt(END)) {
+            segment.putInt(START, offset);
+            segment.putInt(END, offset);
+        } else {
+            segment.putInt(END, offset);
+            segment.putInt(START, offset);
+        }
+    }
+
+    private static void setFree(MappedByteBuffer segment) {
+        segment.putInt(START, 0);  // first: the segment is free
+        segment.putInt(END, 0);
+    }
+
+    private Path fileOf(int file) {
+        return directory.resolve(PREFIX + file + SUFFIX);
+    }
+
+    private static int numberOf(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(),
+                    name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a segment: " + path, e);
+        }
+    }
+
+    /**
+     * Create an empty segment at the position, whose used range starts and
+     * ends at the given offset, in the first free file or a new one. The
+     * file is left first in the free files, for the caller to take it.
+     */
+    private MappedByteBuffer create(long position, int offset) {
+        if (freeFiles.isEmpty()) {
+            freeFiles.add(nextFile++);
+        }
+        MappedByteBuffer segment = map(freeFiles.peekFirst());
+        segment.putInt(0, MAGIC);
+        segment.putLong(POSITION, position);
+        setEmptyRange(segment, offset);  // last: the segment is in use
+        return segment;
+    }
+
+    private MappedByteBuffer map(int file) {
+        try (FileChannel channel = FileChannel.open(fileOf(file),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // the mapping stays valid once the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Mark an unmapped segment free, without mapping it.
+     */
+    private void free(int file) throws IOException {
+        ByteBuffer range = ByteBuffer.allocate(8);  // start and end: 0
+        try (FileChannel channel = FileChannel.open(fileOf(file),
+                StandardOpenOption.WRITE)) {
+            while (range.hasRemaining()) {
+                channel.write(range, START + range.position());
+            }
+        }
+        freeFiles.add(file);
+    }
+
+    /**
+     * Unit testing: random operations compared with an in-memory deque, with
+     * small segments and a restart in the middle.
+     */
+    public static void main(String[] args) throws IOException {
+
+        StdOut.println("Tests start.");
+        Path directory = Files.createTempDirectory("mapped-deque");
+
+        // Test 1: public operations
+        MappedDeque<String> d1 = new MappedDeque<>(directory, STRINGS, 64);
+        StdOut.println("Test 1A passed? " + d1.isEmpty());
+        d1.addLast("B");
+        d1.addFirst("A");
+        d1.addLast("C");
+        StdOut.println("Test 1B passed? " + (d1.size() == 3));
+        StdOut.println("Test 1C passed? " + d1.removeFirst().equals("A"));
+        StdOut.println("Test 1D passed? " + d1.removeLast().equals("C"));
+        StdOut.println("Test 1E passed? " + d1.removeLast().equals("B"));
+
+        // Test 2: exceptions
+        try {
+            d1.removeFirst();
+            StdOut.println("Test 2A passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2A passed? " + result);
+        }
+        try {
+            d1.addLast(null);
+            StdOut.println("Test 2B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NullPointerException;
+            StdOut.println("Test 2B passed? " + result);
+        }
+        try {
+            d1.addFirst(new String(new char[64]));
+            StdOut.println("Test 2C passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof IllegalArgumentException;
+            StdOut.println("Test 2C passed? " + result);
+        }
+
+        // Test 3: random operations across many segments and a restart
+        Random random = new Random(42);
+        ArrayDeque<String> expected = new ArrayDeque<>();
+        boolean same = true;
+        for (int i = 0; i < 20_000; i++) {
+            if (i == 10_000) {
+                d1.close();
+                d1 = new MappedDeque<>(directory, STRINGS, 64);
+                same &= d1.size() == expected.size();
+            }
+            String item = Integer.toString(i);
+            switch (random.nextInt(i < 10_000 ? 6 : 4)) {
+                case 0:
+                    same &= expected.isEmpty()
+                            || d1.removeFirst().equals(expected.pollFirst());
+                    break;
+                case 1:
+                    same &= expected.isEmpty()
+                            || d1.removeLast().equals(expected.pollLast());
+                    break;
+                case 2:
+                case 4:
+                    d1.addFirst(item);
+                    expected.addFirst(item);
+                    break;
+                default:
+                    d1.addLast(item);
+                    expected.addLast(item);
+            }
+        }
+        StdOut.println("Test 3A passed? " + same);
+        while (!expected.isEmpty()) {
+            same &= d1.removeFirst().equals(expected.pollFirst());
+        }
+        StdOut.println("Test 3B passed? " + (same && d1.isEmpty()));
+        StdOut.println("Test 3C passed? "
+                + (fileCount(directory) > 1 + SPARE_SEGMENTS));
+        d1.close();
+        try {
+            d1.addLast("A");
+            StdOut.println("Test 3D passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof IllegalStateException;
+            StdOut.println("Test 3D passed? " + result);
+        }
+        d1 = new MappedDeque<>(directory, STRINGS, 64);
+        StdOut.println("Test 3E passed? " + (d1.isEmpty()
+                && fileCount(directory) == 1 + SPARE_SEGMENTS));
+        d1.close();
+        deleteFiles(directory);
+
+        // Test 4: an empty segment left at the tail by a crash is dropped
+        MappedDeque<String> d4 = new MappedDeque<>(directory, STRINGS, 64);
+        d4.addLast("A");
+        d4.create(1, HEADER_BYTES);
+        MappedDeque<String> d4b = new MappedDeque<>(directory, STRINGS, 64);
+        d4b.addLast("B");
+        StdOut.println("Test 4A passed? " + (d4b.size() == 2
+                && d4b.removeFirst().equals("A")
+                && d4b.removeFirst().equals("B")));
+        d4.close();
+        d4b.close();
+        deleteFiles(directory);
+
+        // Test 5: a queue going through many segments reuses their files
+        MappedDeque<String> d5 = new MappedDeque<>(directory, STRINGS, 64);
+        long filesAfterFirstRound = 0;
+        boolean reused = true;
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 50; i++) {
+                d5.addLast(Integer.toString(i));
+            }
+            for (int i = 0; i < 50; i++) {
+                reused &= d5.removeFirst().equals(Integer.toString(i));
+            }
+            if (round == 0) {
+                filesAfterFirstRound = fileCount(directory);
+            }
+        }
+        StdOut.println("Test 5A passed? "
+                + (reused && fileCount(directory) == filesAfterFirstRound));
+        d5.close();
+        deleteFiles(directory);
+
+        // Test 6: crashes between writing the records and the header
+        MappedDeque<String> d6 = new MappedDeque<>(directory, STRINGS, 64);
+        d6.addLast("A");
+        d6.addLast("B");
+        // a record written but not yet included in the range, and garbage
+        // in the unused bytes of the header, such as a stale count
+        writeRecord(d6.tail, d6.tail.getInt(END), STRINGS.toBytes("C"));
+        d6.tail.putInt(12, 42);
+        MappedDeque<String> d6b = new MappedDeque<>(directory, STRINGS, 64);
+        StdOut.println("Test 6A passed? " + (d6b.size() == 2
+                && d6b.removeFirst().equals("A")
+                && d6b.removeFirst().equals("B")));
+        // an empty range reset halfway
+        d6b.tail.putInt(START, 64);
+        MappedDeque<String> d6c = new MappedDeque<>(directory, STRINGS, 64);
+        boolean test6B = d6c.isEmpty();
+        d6c.addLast("D");
+        test6B &= d6c.removeFirst().equals("D") && d6c.isEmpty();
+        StdOut.println("Test 6B passed? " + test6B);
+        d6.close();
+        d6b.close();
+        d6c.close();
+        deleteFiles(directory);
+        Files.delete(directory);
+
+        StdOut.println("Tests finished.");
+    }
+
+    private static long fileCount(Path directory) throws IOException {
+        long count = 0;
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void deleteFiles(Path directory) throws IOException {
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                Files.delete(file);
+            }
+        }
+    }
+}
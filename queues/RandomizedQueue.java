@@ -1,7 +1,20 @@
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.StdRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author Mincong Huang
@@ -10,6 +23,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
 
     private Item[] array;
     private int lastIndex;
+    private int modCount;
 
     /**
      * Construct an empty randomized queue
@@ -48,6 +62,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             resize(array.length * 2);
         }
         array[++lastIndex] = item;
+        modCount++;
     }
 
     /**
@@ -61,6 +76,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         Item removed = array[i];
         array[i] = array[lastIndex];
         array[lastIndex--] = null;
+        modCount++;
         // resize array if it is only 25% full
         if (size() > 0 && size() == array.length / 4) {
             resize(array.length / 2);
@@ -82,6 +98,90 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         return sample;
     }
 
+    /**
+     * Remove and return k random items, in random order. The items are drawn
+     * by a partial Fisher-Yates shuffle and the array is resized at most once.
+     */
+    public List<Item> dequeue(int k) {
+        List<Item> removed = new ArrayList<>(checkBatchSize(k));
+        for (int i = 0; i < k; i++) {
+            swapRandomToLast();
+            removed.add(array[lastIndex]);
+            array[lastIndex--] = null;
+        }
+        modCount++;
+        // resize array as repeated dequeue() calls would: to the smallest
+        // capacity that is more than 25% full, or to 2 if it is empty
+        int newCapacity = array.length;
+        while (newCapacity > 2 && size() <= newCapacity / 4) {
+            newCapacity /= 2;
+        }
+        if (newCapacity != array.length) {
+            resize(newCapacity);
+        }
+        return removed;
+    }
+
+    /**
+     * Return (but do not remove) k distinct random items, in random order
+     */
+    public List<Item> sample(int k) {
+        List<Item> sample = new ArrayList<>(checkBatchSize(k));
+        Iterator<Item> iterator = iterator();
+        for (int i = 0; i < k; i++) {
+            sample.add(iterator.next());
+        }
+        return sample;
+    }
+
+    /**
+     * Remove all the items and add them to the collection, in random order.
+     * Return the number of items added, which is less than the number of
+     * items removed if the collection rejects some of them. If the
+     * collection throws an exception, the item it failed to add and the
+     * following ones stay in this queue.
+     */
+    public int drainTo(Collection<? super Item> collection) {
+        if (collection == null) {
+            throw new NullPointerException("Collection cannot be null.");
+        }
+        int n = 0;
+        try {
+            while (lastIndex >= 0) {
+                swapRandomToLast();
+                if (collection.add(array[lastIndex])) {
+                    n++;
+                }
+                array[lastIndex--] = null;
+            }
+        } finally {
+            modCount++;
+        }
+        @SuppressWarnings("unchecked")
+        Item[] a = (Item[]) new Object[1];
+        array = a;
+        return n;
+    }
+
+    private int checkBatchSize(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k < 0: " + k);
+        }
+        if (k > size()) {
+            throw new NoSuchElementException(
+                    "RandomizedQueue has fewer than " + k + " items.");
+        }
+        return k;
+    }
+
+    // swap a random item with the last one
+    private void swapRandomToLast() {
+        int i = StdRandom.uniform(lastIndex + 1);
+        Item tmp = array[i];
+        array[i] = array[lastIndex];
+        array[lastIndex] = tmp;
+    }
+
     private void resize(int newCapacity) {
         @SuppressWarnings("unchecked")
         Item[] newArray = (Item[]) new Object[newCapacity];
@@ -94,7 +194,12 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
     }
 
     /**
-     * Return an independent iterator over items in random order
+     * Return an independent iterator over items in random order. The
+     * iterator is created in constant time: it draws a random permutation of
+     * the indices lazily, so it only uses memory for the items returned so
+     * far. It is fail-fast: it throws a
+     * {@code ConcurrentModificationException} if the queue is modified after
+     * its creation.
      */
     public Iterator<Item> iterator() {
         return new RandomizedIterator();
@@ -102,34 +207,32 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
 
     private class RandomizedIterator implements Iterator<Item> {
 
-        private Item[] copiedArray;
-        private int copiedLastIndex;
-
-        RandomizedIterator() {
-            @SuppressWarnings("unchecked")
-            Item[] a = (Item[]) new Object[lastIndex + 1];
-            for (int i = 0; i <= lastIndex; i++) {
-                a[i] = array[i];
-            }
-            copiedArray = a;
-            copiedLastIndex = lastIndex;
-        }
+        private final int expectedModCount = modCount;
+        // Fisher-Yates shuffle of the indices 0 to remaining - 1, in which
+        // only the displaced indices are stored: a missing key i is index i
+        private final Map<Integer, Integer> displaced = new HashMap<>();
+        private int remaining = lastIndex + 1;
 
         @Override
         public boolean hasNext() {
-            return copiedLastIndex >= 0;
+            return remaining > 0;
         }
 
         @Override
         public Item next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
             if (!hasNext()) {
                 throw new NoSuchElementException("No more item.");
             }
-            int i = StdRandom.uniform(copiedLastIndex + 1);
-            Item item = copiedArray[i];
-            copiedArray[i] = copiedArray[copiedLastIndex];
-            copiedArray[copiedLastIndex--] = null;
-            return item;
+            int i = StdRandom.uniform(remaining--);
+            Integer index = displaced.remove(i);
+            Integer last = displaced.remove(remaining);
+            if (i != remaining) {
+                displaced.put(i, last == null ? remaining : last);
+            }
+            return array[index == null ? i : index];
         }
 
         @Override
@@ -138,6 +241,180 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         }
     }
 
+    /**
+     * Return a spliterator over items in no particular order. It splits the
+     * backing array in halves, so parallel streams are balanced. Like the
+     * iterator, it is fail-fast. Use {@link #shuffledStream(boolean)} for a
+     * random order.
+     */
+    @Override
+    public Spliterator<Item> spliterator() {
+        return new ArraySpliterator(0, lastIndex + 1, modCount);
+    }
+
+    /**
+     * Return a sequential stream over items in no particular order
+     */
+    public Stream<Item> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Return a parallel stream over items in no particular order
+     */
+    public Stream<Item> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Return a stream over a copy of the items, in uniformly random order.
+     * The shuffle is done by the spliterator: splitting a range draws a
+     * random subset of its items for the prefix, and the items of a range
+     * are drawn at random while it is traversed, so a parallel stream also
+     * shuffles in parallel.
+     */
+    public Stream<Item> shuffledStream(boolean parallel) {
+        Object[] copy = new Object[lastIndex + 1];
+        System.arraycopy(array, 0, copy, 0, copy.length);
+        return StreamSupport.stream(new ShuffledSpliterator<Item>(copy, 0,
+                copy.length, false, new SplittableRandom()), parallel);
+    }
+
+    private class ArraySpliterator implements Spliterator<Item> {
+
+        private final int expectedModCount;
+        private int i;
+        private final int fence;
+
+        ArraySpliterator(int i, int fence, int expectedModCount) {
+            this.i = i;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (action == null) {
+                throw new NullPointerException("action is null.");
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (i >= fence) {
+                return false;
+            }
+            action.accept(array[i++]);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Item> action) {
+            if (action == null) {
+                throw new NullPointerException("action is null.");
+            }
+            Item[] a = array;
+            for (; i < fence; i++) {
+                action.accept(a[i]);
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public Spliterator<Item> trySplit() {
+            int lo = i;
+            int mid = (lo + fence) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+            i = mid;
+            return new ArraySpliterator(lo, mid, expectedModCount);
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - i;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    private static class ShuffledSpliterator<Item>
+            implements Spliterator<Item> {
+
+        private final Object[] items;  // private copy, shuffled in place
+        private int i;
+        private final int fence;
+        private final boolean shuffled;  // whether [i, fence) is shuffled
+        private final SplittableRandom random;
+
+        ShuffledSpliterator(Object[] items, int i, int fence,
+                boolean shuffled, SplittableRandom random) {
+            this.items = items;
+            this.i = i;
+            this.fence = fence;
+            this.shuffled = shuffled;
+            this.random = random;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Item> action) {
+            if (action == null) {
+                throw new NullPointerException("action is null.");
+            }
+            if (i >= fence) {
+                return false;
+            }
+            if (!shuffled) {
+                swap(i, i + random.nextInt(fence - i));
+            }
+            @SuppressWarnings("unchecked")
+            Item item = (Item) items[i];
+            items[i++] = null;
+            action.accept(item);
+            return true;
+        }
+
+        @Override
+        public Spliterator<Item> trySplit() {
+            int lo = i;
+            int mid = (lo + fence) >>> 1;
+            if (lo >= mid) {
+                return null;
+            }
+            if (!shuffled) {
+                // partial Fisher-Yates: [lo, mid) becomes a shuffled random
+                // subset of [lo, fence)
+                for (int j = lo; j < mid; j++) {
+                    swap(j, j + random.nextInt(fence - j));
+                }
+            }
+            i = mid;
+            return new ShuffledSpliterator<>(items, lo, mid, true,
+                    random.split());
+        }
+
+        private void swap(int a, int b) {
+            Object tmp = items[a];
+            items[a] = items[b];
+            items[b] = tmp;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - i;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     /**
      * Serialization of the queue.
      *
@@ -252,6 +529,118 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         q3B.enqueue(3.1415926);
         StdOut.println("Test 3B passed? " + true);
 
+        // Test 4: batch operations
+        RandomizedQueue<Integer> q4 = new RandomizedQueue<>();
+        for (int i = 0; i < 100; i++) {
+            q4.enqueue(i);
+        }
+        List<Integer> test4A = q4.sample(10);
+        StdOut.println("Test 4A passed? " + (q4.size() == 100
+                && test4A.size() == 10
+                && test4A.stream().distinct().count() == 10));
+        List<Integer> test4B = q4.dequeue(90);
+        StdOut.println("Test 4B passed? " + (q4.size() == 10
+                && test4B.stream().distinct().count() == 90));
+        List<Integer> test4C = new ArrayList<>(test4B);
+        StdOut.println("Test 4C passed? " + (q4.drainTo(test4C) == 10));
+        test4C.sort(null);
+        boolean test4D = q4.isEmpty() && test4C.size() == 100;
+        for (int i = 0; i < test4C.size(); i++) {
+            test4D &= test4C.get(i) == i;
+        }
+        StdOut.println("Test 4D passed? " + test4D);
+        try {
+            q4.dequeue(1);
+            StdOut.println("Test 4E passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 4E passed? " + result);
+        }
+        try {
+            q4.sample(-1);
+            StdOut.println("Test 4F passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof IllegalArgumentException;
+            StdOut.println("Test 4F passed? " + result);
+        }
+        q4.enqueue(1);
+        StdOut.println("Test 4G passed? " + q4.toString().equals("[1]"));
+        for (int i = 0; i < 99; i++) {
+            q4.enqueue(i);
+        }
+        q4.dequeue(100);
+        RandomizedQueue<?> emptied = q4;
+        StdOut.println("Test 4H passed? " + (emptied.array.length == 2));
+        Set<Integer> test4I = new HashSet<>();
+        q4.enqueue(1);
+        q4.enqueue(1);
+        StdOut.println("Test 4I passed? " + (q4.drainTo(test4I) == 1
+                && q4.isEmpty()));
+        for (int i = 0; i < 10; i++) {
+            q4.enqueue(i);
+        }
+        List<Integer> test4J = new ArrayList<Integer>() {
+            @Override
+            public boolean add(Integer item) {
+                if (size() == 3) {
+                    throw new IllegalStateException("Full.");
+                }
+                return super.add(item);
+            }
+        };
+        try {
+            q4.drainTo(test4J);
+            StdOut.println("Test 4J passed? " + false);
+        } catch (IllegalStateException e) {
+            Set<Integer> all = new HashSet<>(test4J);
+            q4.forEach(all::add);
+            StdOut.println("Test 4J passed? " + (q4.size() == 7
+                    && all.size() == 10));
+        }
+
+        // Test 5: lazy iterator
+        RandomizedQueue<Integer> q5 = new RandomizedQueue<>();
+        for (int i = 0; i < 1000; i++) {
+            q5.enqueue(i);
+        }
+        boolean[] seen = new boolean[1000];
+        int test5A = 0;
+        for (int i : q5) {
+            if (!seen[i]) {
+                seen[i] = true;
+                test5A++;
+            }
+        }
+        StdOut.println("Test 5A passed? " + (test5A == 1000));
+        try {
+            Iterator<Integer> it = q5.iterator();
+            q5.dequeue();
+            it.next();
+            StdOut.println("Test 5B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof ConcurrentModificationException;
+            StdOut.println("Test 5B passed? " + result);
+        }
+
+        // Test 6: streams
+        RandomizedQueue<Integer> q6 = new RandomizedQueue<>();
+        for (int i = 0; i < 1000; i++) {
+            q6.enqueue(i);
+        }
+        StdOut.println("Test 6A passed? "
+                + (q6.parallelStream().mapToLong(i -> i).sum() == 499500));
+        Integer[] test6B = q6.shuffledStream(true).toArray(Integer[]::new);
+        boolean[] seen6 = new boolean[1000];
+        int distinct = 0;
+        for (int i : test6B) {
+            if (!seen6[i]) {
+                seen6[i] = true;
+                distinct++;
+            }
+        }
+        StdOut.println("Test 6B passed? " + (distinct == 1000));
+        StdOut.println("Test 6C passed? " + (q6.size() == 1000));
+
         StdOut.println("Tests finished.");
     }
 }
@@ -0,0 +1,200 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Uniform random sample of k items from a stream of unknown length, in O(k)
+ * memory. It uses Li's Algorithm L: once the reservoir is full, the number of
+ * items to skip before the next replacement is drawn directly from its
+ * geometric distribution, so the random generator is called O(k log(n/k))
+ * times instead of once per item.
+ *
+ * @author Mincong Huang
+ */
+public class ReservoirSampler<Item> implements StreamSampler<Item> {
+
+    private final Item[] reservoir;
+    private final SplittableRandom random;
+    private long count;
+    private double w;   // largest of k uniform keys among the reservoir
+    private long skip;  // number of items to skip before next replacement
+
+    /**
+     * Construct an empty sampler of k items
+     */
+    public ReservoirSampler(int k) {
+        this(k, new SplittableRandom());
+    }
+
+    /**
+     * Construct an empty sampler of k items, whose sample only depends on the
+     * seed and the stream
+     */
+    public ReservoirSampler(int k, long seed) {
+        this(k, new SplittableRandom(seed));
+    }
+
+    private ReservoirSampler(int k, SplittableRandom random) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k < 0: " + k);
+        }
+        // Type Item is only known at runtime.
+        @SuppressWarnings("unchecked")
+        Item[] a = (Item[]) new Object[k];
+        reservoir = a;
+        this.random = random;
+    }
+
+    /**
+     * Offer the next item of the stream
+     */
+    @Override
+    public void offer(Item item) {
+        if (item == null) {
+            throw new NullPointerException("Element e cannot be null.");
+        }
+        int k = reservoir.length;
+        if (count < k) {
+            reservoir[(int) count++] = item;
+            if (count == k) {
+                w = Math.exp(Math.log(uniform()) / k);
+                skip = nextSkip();
+            }
+        } else if (skip > 0) {
+            count++;
+            skip--;
+        } else if (k > 0) {
+            count++;
+            reservoir[random.nextInt(k)] = item;
+            w *= Math.exp(Math.log(uniform()) / k);
+            skip = nextSkip();
+        } else {
+            count++;
+        }
+    }
+
+    @Override
+    public boolean wantsNext() {
+        return count < reservoir.length || (reservoir.length > 0 && skip == 0);
+    }
+
+    @Override
+    public void skip() {
+        if (wantsNext()) {
+            throw new IllegalStateException("Next item is wanted.");
+        }
+        count++;
+        if (reservoir.length > 0) {
+            skip--;
+        }
+    }
+
+    // uniform in (0, 1], so that its logarithm is finite
+    private double uniform() {
+        return 1.0 - random.nextDouble();
+    }
+
+    private long nextSkip() {
+        // floor of a geometric variable, saturated at Long.MAX_VALUE
+        return (long) Math.floor(Math.log(uniform()) / Math.log1p(-w));
+    }
+
+    /**
+     * Return the number of items offered so far
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Return the number of items in the sample, i.e. min(k, count)
+     */
+    public int size() {
+        return (int) Math.min(reservoir.length, count);
+    }
+
+    /**
+     * Return the sample of the items offered so far, in random order. Each
+     * subset of min(k, count) items is equally likely.
+     */
+    public List<Item> sample() {
+        int size = size();
+        Item[] items = Arrays.copyOf(reservoir, size);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Item tmp = items[i];
+            items[i] = items[j];
+            items[j] = tmp;
+        }
+        return new ArrayList<>(Arrays.asList(items));
+    }
+
+    /**
+     * Unit testing.
+     */
+    public static void main(String[] args) {
+
+        StdOut.println("Tests start.");
+
+        // Test 1: fewer items than k
+        ReservoirSampler<String> s1 = new ReservoirSampler<>(5, 42);
+        s1.offer("A");
+        s1.offer("B");
+        StdOut.println("Test 1A passed? " + (s1.size() == 2));
+        StdOut.println("Test 1B passed? " + (s1.count() == 2));
+        List<String> sample1 = s1.sample();
+        StdOut.println("Test 1C passed? " + (sample1.contains("A")
+                && sample1.contains("B") && sample1.size() == 2));
+
+        // Test 2: exceptions
+        try {
+            new ReservoirSampler<String>(-1);
+            StdOut.println("Test 2A passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof IllegalArgumentException;
+            StdOut.println("Test 2A passed? " + result);
+        }
+        try {
+            s1.offer(null);
+            StdOut.println("Test 2B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NullPointerException;
+            StdOut.println("Test 2B passed? " + result);
+        }
+
+        // Test 3: k = 0
+        ReservoirSampler<Integer> s3 = new ReservoirSampler<>(0, 42);
+        for (int i = 0; i < 10; i++) {
+            s3.offer(i);
+        }
+        StdOut.println("Test 3A passed? " + s3.sample().isEmpty());
+        StdOut.println("Test 3B passed? " + (s3.count() == 10));
+
+        // Test 4: every item is sampled with probability k/n, including the
+        // first and the last ones
+        int n = 100;
+        int k = 10;
+        int runs = 100_000;
+        int[] hits = new int[n];
+        for (int run = 0; run < runs; run++) {
+            ReservoirSampler<Integer> s4 = new ReservoirSampler<>(k, run);
+            for (int i = 0; i < n; i++) {
+                s4.offer(i);
+            }
+            for (int i : s4.sample()) {
+                hits[i]++;
+            }
+        }
+        double expected = (double) runs * k / n;
+        double sigma = Math.sqrt(expected * (1 - (double) k / n));
+        boolean uniform = true;
+        for (int i = 0; i < n; i++) {
+            uniform &= Math.abs(hits[i] - expected) < 5 * sigma;
+        }
+        StdOut.println("Test 4A passed? " + uniform);
+
+        StdOut.println("Tests finished.");
+    }
+}
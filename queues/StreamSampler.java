@@ -0,0 +1,28 @@
+/**
+ * Random sample of the items of a stream, fed one item at a time.
+ * <p>
+ * Samplers decide whether they keep the next item before seeing it, so a
+ * reader which asks {@link #wantsNext()} first only needs to build the items
+ * which are kept, and may {@link #skip()} the others.
+ *
+ * @author Mincong Huang
+ */
+public interface StreamSampler<Item> {
+
+    /**
+     * Offer the next item of the stream
+     */
+    void offer(Item item);
+
+    /**
+     * Will the next item of the stream enter the sample?
+     */
+    boolean wantsNext();
+
+    /**
+     * Skip the next item of the stream, which must not be wanted
+     *
+     * @throws IllegalStateException if the next item is wanted
+     */
+    void skip();
+}
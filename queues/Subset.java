@@ -1,5 +1,12 @@
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 /**
  * A client program that
@@ -12,13 +19,36 @@ import edu.princeton.cs.algs4.StdOut;
  * Each item from the sequence can be printed out at most once. You may assume
  * that {@code 0 ≤ k ≤ n}, where {@code n} is the number of string on standard
  * input.
+ * <p>
+ * Usage: {@code Subset k [stream [file...]]}. In stream mode, the strings are
+ * scanned as bytes, only a reservoir of {@code k} strings is kept in memory,
+ * and only the strings entering the reservoir are decoded, so the input may
+ * be larger than the heap. If files are given, they are memory-mapped and
+ * read instead of standard input, in parallel: each file is sampled by its
+ * own thread, then the samples are merged.
  *
  * @author Mincong Huang
  */
 public class Subset {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         final int k = Integer.parseInt(args[0]);
+        if (args.length > 2 && args[1].equals("stream")) {
+            String[] files = new String[args.length - 2];
+            System.arraycopy(args, 2, files, 0, files.length);
+            for (String token : sampleFiles(k, files)) {
+                StdOut.println(token);
+            }
+            return;
+        }
+        if (args.length > 1 && args[1].equals("stream")) {
+            ReservoirSampler<String> sampler = new ReservoirSampler<>(k);
+            ByteTokenizer.sample(System.in, sampler);
+            for (String token : sampler.sample()) {
+                StdOut.println(token);
+            }
+            return;
+        }
         RandomizedQueue<String> queue = new RandomizedQueue<>();
         String[] tokens = StdIn.readAllStrings();
         for (String token : tokens) {
@@ -28,4 +58,32 @@ public class Subset {
             StdOut.println(queue.dequeue());
         }
     }
+
+    /**
+     * Sample k strings of the given files, each file being memory-mapped and
+     * read by a worker thread of the common pool into its own reservoir.
+     */
+    private static List<String> sampleFiles(int k, String[] files)
+            throws IOException {
+        SplittableRandom random = new SplittableRandom();
+        List<WeightedReservoirSampler<String>> samplers = new ArrayList<>();
+        for (int i = 0; i < files.length; i++) {
+            samplers.add(new WeightedReservoirSampler<>(k, random.nextLong()));
+        }
+        try {
+            IntStream.range(0, files.length).parallel().forEach(i -> {
+                try {
+                    ByteTokenizer.sample(Paths.get(files[i]), samplers.get(i));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (int i = 1; i < files.length; i++) {
+            samplers.get(0).merge(samplers.get(i));
+        }
+        return samplers.get(0).sample();
+    }
 }
@@ -0,0 +1,404 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A randomized queue in which each item is drawn with probability
+ * proportional to its weight. The items and their weights are stored in
+ * compact arrays, and a Fenwick tree over the weights gives the prefix sums,
+ * so that enqueue, sample, dequeue and weight updates take O(log n).
+ * <p>
+ * Enqueue returns a handle, which identifies the item until it is removed,
+ * and is then recycled. Use it to update the weight of the item in place.
+ * <p>
+ * For a set which does not change, {@link #buildAliasTable()} builds Vose's
+ * alias table in O(n), after which {@link #sample()} takes constant time
+ * until the next modification.
+ *
+ * @author Mincong Huang
+ */
+public class WeightedRandomizedQueue<Item> {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final int NO_HANDLE = -1;
+
+    private Item[] items;
+    private double[] weights;
+    private double[] tree;      // Fenwick tree of weights, base-1
+    private int[] handleOf;     // handle of the item in each slot
+    private int[] slotOf;       // slot of each handle, or encoded free list
+    private int handleCount;
+    private int freeHandle = NO_HANDLE;
+    private int size;
+
+    private double[] aliasProbability;  // null unless the alias table is up
+    private int[] alias;
+
+    /**
+     * Construct an empty weighted randomized queue
+     */
+    public WeightedRandomizedQueue() {
+        allocate(MIN_CAPACITY);
+        slotOf = new int[MIN_CAPACITY];
+    }
+
+    /**
+     * Is the queue empty?
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the number of items on the queue
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the sum of the weights of the items on the queue
+     */
+    public double totalWeight() {
+        return prefixSum(size);
+    }
+
+    /**
+     * Add the item with the given positive weight, and return its handle
+     */
+    public int enqueue(Item item, double weight) {
+        if (item == null) {
+            throw new NullPointerException("Element e cannot be null.");
+        }
+        checkWeight(weight);
+        if (size == items.length) {
+            resize(items.length * 2);
+        }
+        int handle = newHandle();
+        int slot = size++;
+        items[slot] = item;
+        weights[slot] = weight;
+        handleOf[slot] = handle;
+        slotOf[handle] = slot;
+        add(slot, weight);
+        aliasProbability = null;
+        return handle;
+    }
+
+    /**
+     * Return (but do not remove) a random item, drawn with probability
+     * proportional to its weight
+     */
+    public Item sample() {
+        return items[randomSlot()];
+    }
+
+    /**
+     * Remove and return a random item, drawn with probability proportional
+     * to its weight
+     */
+    public Item dequeue() {
+        return removeSlot(randomSlot());
+    }
+
+    /**
+     * Remove and return the item of the given handle
+     */
+    public Item remove(int handle) {
+        return removeSlot(slotOf(handle));
+    }
+
+    /**
+     * Return the weight of the item of the given handle
+     */
+    public double weight(int handle) {
+        return weights[slotOf(handle)];
+    }
+
+    /**
+     * Set the weight of the item of the given handle
+     */
+    public void setWeight(int handle, double weight) {
+        checkWeight(weight);
+        int slot = slotOf(handle);
+        add(slot, weight - weights[slot]);
+        weights[slot] = weight;
+        aliasProbability = null;
+    }
+
+    /**
+     * Build the alias table of the current items, so that {@link #sample()}
+     * takes constant time until the queue is modified.
+     */
+    public void buildAliasTable() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += weights[i];
+        }
+        aliasProbability = new double[size];
+        alias = new int[size];
+        // Vose: pair each small column with a large one
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < size; i++) {
+            aliasProbability[i] = weights[i] * size / total;
+            if (aliasProbability[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int s = small[--smallCount];
+            int l = large[--largeCount];
+            alias[s] = l;
+            aliasProbability[l] -= 1 - aliasProbability[s];
+            if (aliasProbability[l] < 1) {
+                small[smallCount++] = l;
+            } else {
+                large[largeCount++] = l;
+            }
+        }
+        // left-overs are full columns, up to rounding errors
+        while (largeCount > 0) {
+            aliasProbability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            aliasProbability[small[--smallCount]] = 1;
+        }
+    }
+
+    private int randomSlot() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Queue is empty.");
+        }
+        if (aliasProbability != null) {
+            int column = StdRandom.uniform(size);
+            return StdRandom.uniform() < aliasProbability[column]
+                    ? column : alias[column];
+        }
+        // descend the Fenwick tree to the first slot whose prefix sum
+        // exceeds r
+        double r = StdRandom.uniform() * totalWeight();
+        int slot = 0;
+        for (int step = Integer.highestOneBit(items.length); step > 0;
+                step >>= 1) {
+            int next = slot + step;
+            if (next <= items.length && tree[next] <= r) {
+                slot = next;
+                r -= tree[next];
+            }
+        }
+        // rounding errors may lead past the last item
+        return Math.min(slot, size - 1);
+    }
+
+    private Item removeSlot(int slot) {
+        Item removed = items[slot];
+        int last = --size;
+        add(slot, weights[last] - weights[slot]);
+        add(last, -weights[last]);
+        int handle = handleOf[slot];
+        items[slot] = items[last];
+        weights[slot] = weights[last];
+        handleOf[slot] = handleOf[last];
+        slotOf[handleOf[slot]] = slot;
+        freeHandle(handle);
+        items[last] = null;
+        weights[last] = 0;
+        aliasProbability = null;
+        // resize arrays if they are only 25% full
+        if (items.length > MIN_CAPACITY && size == items.length / 4) {
+            resize(items.length / 2);
+        }
+        return removed;
+    }
+
+    private static void checkWeight(double weight) {
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Illegal weight: " + weight);
+        }
+    }
+
+    private int slotOf(int handle) {
+        if (handle < 0 || handle >= handleCount || slotOf[handle] < 0) {
+            throw new IllegalArgumentException("Unknown handle: " + handle);
+        }
+        return slotOf[handle];
+    }
+
+    /**
+     * Return a recycled handle, or a new one. Free handles are chained in
+     * slotOf: a free handle h stores -2 - (next free handle).
+     */
+    private int newHandle() {
+        if (freeHandle != NO_HANDLE) {
+            int handle = freeHandle;
+            freeHandle = -2 - slotOf[handle];
+            return handle;
+        }
+        if (handleCount == slotOf.length) {
+            slotOf = Arrays.copyOf(slotOf, handleCount * 2);
+        }
+        return handleCount++;
+    }
+
+    private void freeHandle(int handle) {
+        slotOf[handle] = -2 - freeHandle;
+        freeHandle = handle;
+    }
+
+    private void add(int slot, double delta) {
+        for (int i = slot + 1; i <= items.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private double prefixSum(int count) {
+        double sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void allocate(int capacity) {
+        @SuppressWarnings("unchecked")
+        Item[] a = (Item[]) new Object[capacity];
+        items = a;
+        weights = new double[capacity];
+        tree = new double[capacity + 1];
+        handleOf = new int[capacity];
+    }
+
+    /**
+     * Copy the items to arrays of the given capacity, and rebuild the
+     * Fenwick tree in O(n), which also clears its rounding errors.
+     */
+    private void resize(int newCapacity) {
+        Item[] oldItems = items;
+        double[] oldWeights = weights;
+        int[] oldHandleOf = handleOf;
+        allocate(newCapacity);
+        System.arraycopy(oldItems, 0, items, 0, size);
+        System.arraycopy(oldWeights, 0, weights, 0, size);
+        System.arraycopy(oldHandleOf, 0, handleOf, 0, size);
+        for (int i = 1; i <= newCapacity; i++) {
+            if (i <= size) {
+                tree[i] += weights[i - 1];
+            }
+            int parent = i + (i & -i);
+            if (parent <= newCapacity) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    /**
+     * Unit testing.
+     */
+    public static void main(String[] args) {
+
+        StdOut.println("Tests start.");
+
+        // Test 1: public operations
+        WeightedRandomizedQueue<String> q1 = new WeightedRandomizedQueue<>();
+        StdOut.println("Test 1A passed? " + q1.isEmpty());
+        int a = q1.enqueue("A", 1.0);
+        int b = q1.enqueue("B", 2.0);
+        StdOut.println("Test 1B passed? " + (q1.size() == 2));
+        StdOut.println("Test 1C passed? " + (q1.totalWeight() == 3.0));
+        q1.setWeight(a, 4.0);
+        StdOut.println("Test 1D passed? " + (q1.weight(a) == 4.0
+                && q1.totalWeight() == 6.0));
+        StdOut.println("Test 1E passed? " + q1.remove(a).equals("A"));
+        StdOut.println("Test 1F passed? " + (q1.weight(b) == 2.0));
+        StdOut.println("Test 1G passed? " + q1.dequeue().equals("B"));
+        StdOut.println("Test 1H passed? " + q1.isEmpty());
+
+        // Test 2: exceptions
+        WeightedRandomizedQueue<String> q2 = new WeightedRandomizedQueue<>();
+        try {
+            q2.dequeue();
+            StdOut.println("Test 2A passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NoSuchElementException;
+            StdOut.println("Test 2A passed? " + result);
+        }
+        try {
+            q2.enqueue("A", -1.0);
+            StdOut.println("Test 2B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof IllegalArgumentException;
+            StdOut.println("Test 2B passed? " + result);
+        }
+        try {
+            q2.enqueue(null, 1.0);
+            StdOut.println("Test 2C passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NullPointerException;
+            StdOut.println("Test 2C passed? " + result);
+        }
+        try {
+            int handle = q2.enqueue("A", 1.0);
+            q2.remove(handle);
+            q2.weight(handle);
+            StdOut.println("Test 2D passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof IllegalArgumentException;
+            StdOut.println("Test 2D passed? " + result);
+        }
+
+        // Test 3: items are sampled proportionally to their weights, with
+        // the Fenwick tree then with the alias table
+        WeightedRandomizedQueue<Integer> q3 = new WeightedRandomizedQueue<>();
+        int n = 20;
+        int[] handles = new int[n];
+        for (int i = 0; i < n; i++) {
+            handles[i] = q3.enqueue(i, 1.0);
+        }
+        for (int i = 0; i < n; i++) {
+            q3.setWeight(handles[i], i + 1);
+        }
+        StdOut.println("Test 3A passed? " + isProportional(q3, n));
+        q3.buildAliasTable();
+        StdOut.println("Test 3B passed? " + isProportional(q3, n));
+
+        // Test 4: dequeue removes every item exactly once, across resizes
+        WeightedRandomizedQueue<Integer> q4 = new WeightedRandomizedQueue<>();
+        for (int i = 0; i < 1000; i++) {
+            q4.enqueue(i, 1 + i % 7);
+        }
+        boolean[] seen = new boolean[1000];
+        boolean test4A = true;
+        while (!q4.isEmpty()) {
+            int i = q4.dequeue();
+            test4A &= !seen[i];
+            seen[i] = true;
+        }
+        StdOut.println("Test 4A passed? " + test4A);
+
+        StdOut.println("Tests finished.");
+    }
+
+    private static boolean isProportional(WeightedRandomizedQueue<Integer> q,
+            int n) {
+        int draws = 210_000;
+        int[] hits = new int[n];
+        for (int i = 0; i < draws; i++) {
+            hits[q.sample()]++;
+        }
+        double total = n * (n + 1) / 2.0;
+        boolean result = true;
+        for (int i = 0; i < n; i++) {
+            double p = (i + 1) / total;
+            double mean = draws * p;
+            result &= Math.abs(hits[i] - mean)
+                    < 5 * Math.sqrt(mean * (1 - p));
+        }
+        return result;
+    }
+}
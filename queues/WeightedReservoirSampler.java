@@ -0,0 +1,333 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted random sample of k items from a stream, without replacement, in
+ * O(k) memory. Each item gets the random key {@code log(u) / weight}, u
+ * uniform in (0, 1], and the sample is made of the k items with the largest
+ * keys (Efraimidis and Spirakis). When all the weights are equal, every
+ * subset of k items is equally likely.
+ * <p>
+ * Since the keys of the items are independent, samplers fed with disjoint
+ * shards of a stream can be merged into a sample of the whole stream: it
+ * is made of the k largest keys of the union. So each worker thread can
+ * sample its own shard without any synchronization.
+ * <p>
+ * Once the reservoir is full, the weight to skip before the next replacement
+ * is drawn directly (exponential jumps), so the random generator is called
+ * O(k log(n/k)) times instead of once per item.
+ *
+ * @author Mincong Huang
+ */
+public class WeightedReservoirSampler<Item>
+        implements StreamSampler<Item> {
+
+    private final int capacity;
+    private final double[] keys;  // min-heap of keys, at indices 1 to size
+    private final Item[] items;
+    private final SplittableRandom random;
+    private int size;
+    private long count;
+    private double jump;  // weight left to skip before next replacement
+
+    /**
+     * Construct an empty sampler of k items
+     */
+    public WeightedReservoirSampler(int k) {
+        this(k, new SplittableRandom());
+    }
+
+    /**
+     * Construct an empty sampler of k items, whose sample only depends on the
+     * seed and the stream
+     */
+    public WeightedReservoirSampler(int k, long seed) {
+        this(k, new SplittableRandom(seed));
+    }
+
+    private WeightedReservoirSampler(int k, SplittableRandom random) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k < 0: " + k);
+        }
+        capacity = k;
+        keys = new double[k + 1];
+        // Type Item is only known at runtime.
+        @SuppressWarnings("unchecked")
+        Item[] a = (Item[]) new Object[k + 1];
+        items = a;
+        this.random = random;
+    }
+
+    /**
+     * Offer the next item of the stream, with weight 1
+     */
+    @Override
+    public void offer(Item item) {
+        offer(item, 1.0);
+    }
+
+    /**
+     * Offer the next item of the stream, with the given positive weight
+     */
+    public void offer(Item item, double weight) {
+        if (item == null) {
+            throw new NullPointerException("Element e cannot be null.");
+        }
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Illegal weight: " + weight);
+        }
+        count++;
+        if (size < capacity) {
+            insert(item, Math.log(uniform()) / weight);
+            if (size == capacity) {
+                jump = nextJump();
+            }
+            return;
+        }
+        if (capacity == 0) {
+            return;
+        }
+        jump -= weight;
+        if (jump <= 0) {
+            // the key of the item is larger than the minimum: draw it
+            // uniformly among such keys, i.e. u in (minimum^weight, 1]
+            double t = Math.exp(keys[1] * weight);
+            double u = t + (1 - t) * uniform();
+            replaceMin(item, Math.log(u) / weight);
+            jump = nextJump();
+        }
+    }
+
+    /**
+     * Will the next item of the stream enter the sample, if its weight is 1?
+     */
+    @Override
+    public boolean wantsNext() {
+        return size < capacity || (capacity > 0 && jump <= 1);
+    }
+
+    /**
+     * Skip the next item of the stream, of weight 1, which must not be
+     * wanted
+     */
+    @Override
+    public void skip() {
+        if (wantsNext()) {
+            throw new IllegalStateException("Next item is wanted.");
+        }
+        count++;
+        jump -= 1;
+    }
+
+    // uniform in (0, 1], so that its logarithm is finite
+    private double uniform() {
+        return 1.0 - random.nextDouble();
+    }
+
+    /**
+     * Weight of the items to skip until one of them has a key larger than
+     * the minimum key of the reservoir.
+     */
+    private double nextJump() {
+        return Math.log(uniform()) / keys[1];
+    }
+
+    /**
+     * Merge the sample of another sampler, fed with a disjoint part of the
+     * stream, into this one. Return this sampler, which now samples the
+     * concatenation of both streams.
+     */
+    public WeightedReservoirSampler<Item> merge(
+            WeightedReservoirSampler<Item> that) {
+        if (that == null) {
+            throw new NullPointerException("that is null.");
+        }
+        if (that.capacity != capacity) {
+            throw new IllegalArgumentException(
+                    "Different sample sizes: " + capacity + ", "
+                            + that.capacity);
+        }
+        for (int i = 1; i <= that.size; i++) {
+            if (size < capacity) {
+                insert(that.items[i], that.keys[i]);
+            } else if (that.keys[i] > keys[1]) {
+                replaceMin(that.items[i], that.keys[i]);
+            }
+        }
+        count += that.count;
+        if (size == capacity && capacity > 0) {
+            // the minimum changed: the remaining jump is drawn again, which
+            // is valid since the keys of the items are independent
+            jump = nextJump();
+        }
+        return this;
+    }
+
+    /**
+     * Return the number of items offered so far
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Return the number of items in the sample, i.e. min(k, count)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the sample, by decreasing key. This is the order in which
+     * successive weighted draws without replacement would pick the items;
+     * in particular it is uniformly random when all weights are equal.
+     */
+    public List<Item> sample() {
+        double[] heapKeys = keys.clone();
+        Item[] heapItems = items.clone();
+        int n = size;
+        List<Item> sample = new ArrayList<>(n);
+        while (n > 0) {
+            sample.add(heapItems[1]);
+            heapKeys[1] = heapKeys[n];
+            heapItems[1] = heapItems[n];
+            heapItems[n--] = null;
+            sink(heapKeys, heapItems, n);
+        }
+        // extracted by increasing key
+        Collections.reverse(sample);
+        return sample;
+    }
+
+    private void insert(Item item, double key) {
+        int i = ++size;
+        while (i > 1 && keys[i / 2] > key) {
+            keys[i] = keys[i / 2];
+            items[i] = items[i / 2];
+            i /= 2;
+        }
+        keys[i] = key;
+        items[i] = item;
+    }
+
+    private void replaceMin(Item item, double key) {
+        keys[1] = key;
+        items[1] = item;
+        sink(keys, items, size);
+    }
+
+    private static <Item> void sink(double[] keys, Item[] items, int n) {
+        int i = 1;
+        double key = keys[1];
+        Item item = items[1];
+        while (2 * i <= n) {
+            int j = 2 * i;
+            if (j < n && keys[j + 1] < keys[j]) {
+                j++;
+            }
+            if (key <= keys[j]) {
+                break;
+            }
+            keys[i] = keys[j];
+            items[i] = items[j];
+            i = j;
+        }
+        keys[i] = key;
+        items[i] = item;
+    }
+
+    /**
+     * Unit testing.
+     */
+    public static void main(String[] args) {
+
+        StdOut.println("Tests start.");
+
+        // Test 1: fewer items than k
+        WeightedReservoirSampler<String> s1 =
+                new WeightedReservoirSampler<>(5, 42);
+        s1.offer("A");
+        s1.offer("B", 3.0);
+        List<String> sample1 = s1.sample();
+        StdOut.println("Test 1A passed? " + (s1.size() == 2));
+        StdOut.println("Test 1B passed? " + (sample1.contains("A")
+                && sample1.contains("B") && sample1.size() == 2));
+
+        // Test 2: exceptions
+        try {
+            s1.offer("C", 0);
+            StdOut.println("Test 2A passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof IllegalArgumentException;
+            StdOut.println("Test 2A passed? " + result);
+        }
+        try {
+            s1.offer(null);
+            StdOut.println("Test 2B passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof NullPointerException;
+            StdOut.println("Test 2B passed? " + result);
+        }
+        try {
+            s1.merge(new WeightedReservoirSampler<>(4));
+            StdOut.println("Test 2C passed? " + false);
+        } catch (Exception e) {
+            boolean result = e instanceof IllegalArgumentException;
+            StdOut.println("Test 2C passed? " + result);
+        }
+
+        // Test 3: samples of 4 shards merged, every item is sampled with
+        // probability k/n
+        int n = 100;
+        int k = 10;
+        int shards = 4;
+        int runs = 50_000;
+        int[] hits = new int[n];
+        for (int run = 0; run < runs; run++) {
+            WeightedReservoirSampler<Integer> merged =
+                    new WeightedReservoirSampler<>(k, run);
+            for (int shard = 0; shard < shards; shard++) {
+                WeightedReservoirSampler<Integer> s3 =
+                        new WeightedReservoirSampler<>(k, run * 31L + shard);
+                for (int i = shard; i < n; i += shards) {
+                    s3.offer(i);
+                }
+                merged.merge(s3);
+            }
+            for (int i : merged.sample()) {
+                hits[i]++;
+            }
+        }
+        double expected = (double) runs * k / n;
+        double sigma = Math.sqrt(expected * (1 - (double) k / n));
+        boolean uniform = true;
+        for (int i = 0; i < n; i++) {
+            uniform &= Math.abs(hits[i] - expected) < 5 * sigma;
+        }
+        StdOut.println("Test 3A passed? " + uniform);
+
+        // Test 4: with k = 1, an item is picked proportionally to its weight
+        int[] picks = new int[3];
+        for (int run = 0; run < runs; run++) {
+            WeightedReservoirSampler<Integer> s4 =
+                    new WeightedReservoirSampler<>(1, run);
+            for (int i = 0; i < 3; i++) {
+                s4.offer(i, i + 1);
+            }
+            picks[s4.sample().get(0)]++;
+        }
+        boolean weighted = true;
+        for (int i = 0; i < 3; i++) {
+            double p = (i + 1) / 6.0;
+            double mean = runs * p;
+            weighted &= Math.abs(picks[i] - mean)
+                    < 5 * Math.sqrt(mean * (1 - p));
+        }
+        StdOut.println("Test 4A passed? " + weighted);
+
+        StdOut.println("Tests finished.");
+    }
+}
@@ -0,0 +1,193 @@
+import edu.princeton.cs.algs4.StdOut;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Chase-Lev work-stealing deque. A single owner thread pushes and pops items
+ * at the bottom, any number of thief threads steal items from the top. The
+ * owner only synchronizes with thieves when they compete for the last item,
+ * so pushes and pops are wait-free and steals are lock-free.
+ * <p>
+ * The items live in a growable circular array. The indices {@code top} and
+ * {@code bottom} only grow, except for the transient decrement of
+ * {@code bottom} by a pop. When the array is full, the owner copies the live
+ * items to an array twice as large; slow thieves may still read the old one,
+ * which is never modified afterwards.
+ *
+ * @author Mincong Huang
+ */
+public class WorkStealingDeque<Item> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final AtomicLong top = new AtomicLong();
+    private volatile long bottom;
+    private volatile AtomicReferenceArray<Item> array =
+            new AtomicReferenceArray<>(MIN_CAPACITY);
+
+    /**
+     * Add the item to the bottom. Must only be called by the owner thread.
+     */
+    public void push(Item item) {
+        if (item == null) {
+            throw new NullPointerException("Element e cannot be null.");
+        }
+        long b = bottom;
+        long t = top.get();
+        AtomicReferenceArray<Item> a = array;
+        if (b - t >= a.length()) {
+            a = grow(a, t, b);
+        }
+        a.set(indexOf(a, b), item);
+        bottom = b + 1;
+    }
+
+    /**
+     * Remove and return the item at the bottom, or null if the deque is
+     * empty. Must only be called by the owner thread.
+     */
+    public Item pop() {
+        long b = bottom - 1;
+        AtomicReferenceArray<Item> a = array;
+        bottom = b;
+        long t = top.get();
+        if (t > b) {
+            bottom = b + 1;  // empty
+            return null;
+        }
+        Item item = a.get(indexOf(a, b));
+        if (t == b) {
+            // last item: race against the thieves
+            if (!top.compareAndSet(t, t + 1)) {
+                item = null;
+            }
+            bottom = b + 1;
+        }
+        if (item != null) {
+            a.set(indexOf(a, b), null);  // thieves cannot take it any more
+        }
+        return item;
+    }
+
+    /**
+     * Remove and return the item at the top, or null if the deque is empty.
+     * May be called by any thread.
+     */
+    public Item steal() {
+        while (true) {
+            long t = top.get();
+            long b = bottom;
+            if (t >= b) {
+                return null;
+            }
+            AtomicReferenceArray<Item> a = array;
+            Item item = a.get(indexOf(a, t));
+            if (top.compareAndSet(t, t + 1)) {
+                return item;
+            }
+            // lost the race against another thief or the owner, retry
+        }
+    }
+
+    /**
+     * Return the number of items on the deque. The value was exact at some
+     * instant during the call: {@code top} is read before and after
+     * {@code bottom}, and the read is retried if a steal happened meanwhile.
+     */
+    public int size() {
+        while (true) {
+            long t = top.get();
+            long b = bottom;
+            if (top.get() == t) {
+                // negative while the owner pops from an empty deque
+                return (int) Math.max(0, b - t);
+            }
+        }
+    }
+
+    /**
+     * Is the deque empty?
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private static int indexOf(AtomicReferenceArray<?> a, long i) {
+        return (int) (i & (a.length() - 1));
+    }
+
+    private AtomicReferenceArray<Item> grow(AtomicReferenceArray<Item> a,
+            long t, long b) {
+        AtomicReferenceArray<Item> newArray =
+                new AtomicReferenceArray<>(a.length() * 2);
+        for (long i = t; i < b; i++) {
+            newArray.set(indexOf(newArray, i), a.get(indexOf(a, i)));
+        }
+        array = newArray;
+        return newArray;
+    }
+
+    /**
+     * Stress test: the owner pushes and pops items while thieves steal them.
+     * Every item must be taken exactly once.
+     * <p>
+     * Usage: {@code WorkStealingDeque [items [thieves]]}
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int thiefCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        StdOut.println("Tests start.");
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<>();
+        AtomicIntegerArray taken = new AtomicIntegerArray(n);
+        AtomicLong takenCount = new AtomicLong();
+        boolean[] sizeInRange = {true};
+
+        Thread[] thieves = new Thread[thiefCount];
+        for (int i = 0; i < thiefCount; i++) {
+            thieves[i] = new Thread(() -> {
+                while (takenCount.get() < n) {
+                    Integer item = deque.steal();
+                    if (item != null) {
+                        taken.incrementAndGet(item);
+                        takenCount.incrementAndGet();
+                    }
+                    int size = deque.size();
+                    if (size < 0 || size > n) {
+                        sizeInRange[0] = false;
+                    }
+                }
+            });
+            thieves[i].start();
+        }
+        for (int i = 0; i < n; i++) {
+            deque.push(i);
+            if (i % 3 == 0) {
+                Integer item = deque.pop();
+                if (item != null) {
+                    taken.incrementAndGet(item);
+                    takenCount.incrementAndGet();
+                }
+            }
+        }
+        Integer item;
+        while ((item = deque.pop()) != null) {
+            taken.incrementAndGet(item);
+            takenCount.incrementAndGet();
+        }
+        for (Thread thief : thieves) {
+            thief.join();
+        }
+
+        boolean exactlyOnce = true;
+        for (int i = 0; i < n; i++) {
+            exactlyOnce &= taken.get(i) == 1;
+        }
+        StdOut.println("Test 1A passed? " + exactlyOnce);
+        StdOut.println("Test 1B passed? " + deque.isEmpty());
+        StdOut.println("Test 1C passed? " + sizeInRange[0]);
+        StdOut.println("Tests finished.");
+    }
+}